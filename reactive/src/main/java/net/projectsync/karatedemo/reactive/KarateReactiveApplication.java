@@ -0,0 +1,12 @@
+package net.projectsync.karatedemo.reactive;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+@SpringBootApplication
+public class KarateReactiveApplication {
+
+	public static void main(String[] args) {
+		SpringApplication.run(KarateReactiveApplication.class, args);
+	}
+}
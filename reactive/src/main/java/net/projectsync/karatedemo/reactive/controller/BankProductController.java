@@ -0,0 +1,71 @@
+package net.projectsync.karatedemo.reactive.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import net.projectsync.karatedemo.reactive.model.BankProduct;
+import net.projectsync.karatedemo.reactive.service.BankProductService;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import javax.validation.Valid;
+import java.net.URI;
+
+/**
+ * Same contract as the blocking BankProductController, on WebFlux: no request holds a thread while it waits on the database
+ */
+@RestController
+@RequestMapping("/api/v1/bankproducts")
+@RequiredArgsConstructor
+public class BankProductController {
+
+    private final BankProductService bankProductService;
+
+    // CREATE
+    @PostMapping
+    public Mono<ResponseEntity<BankProduct>> createProduct(@Valid @RequestBody BankProduct product) {
+        return bankProductService.createProduct(product)
+                .map(created -> ResponseEntity
+                        .created(URI.create("/api/v1/bankproducts/" + created.getId())) // Location header
+                        .body(created));
+    }
+
+    // READ (by ID)
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<BankProduct>> getProductById(@PathVariable Long id) {
+        return bankProductService.getProductById(id)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    // READ (all products)
+    // application/json      -> one JSON array
+    // application/x-ndjson  -> one product per line, written as rows arrive and only as fast as the client reads (back-pressure)
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<BankProduct> getAllProducts() {
+        return bankProductService.getAllProducts();
+    }
+
+    // EXPORT (all products as NDJSON), same path as the blocking app
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<BankProduct> exportProducts() {
+        return bankProductService.getAllProducts();
+    }
+
+    // UPDATE
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<BankProduct>> updateProduct(@PathVariable Long id, @Valid @RequestBody BankProduct product) {
+        return bankProductService.updateProduct(id, product)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    // DELETE (by ID)
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> deleteProduct(@PathVariable Long id) {
+        return bankProductService.deleteProduct(id)
+                .map(deleted -> deleted
+                        ? ResponseEntity.noContent().<Void>build()
+                        : ResponseEntity.notFound().<Void>build());
+    }
+}
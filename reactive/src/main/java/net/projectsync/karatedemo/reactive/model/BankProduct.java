@@ -0,0 +1,32 @@
+package net.projectsync.karatedemo.reactive.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * Same table and JSON shape as the JPA entity of the blocking app.
+ * The id is assigned before the INSERT (see BankProductIdAllocator), so new vs existing is decided by 'version'
+ */
+@Table("bank_product")
+@Data
+public class BankProduct {
+
+    @Id
+    private Long id;
+
+    private String title;
+
+    // null -> not yet inserted. Incremented by every update, like the JPA @Version column
+    @Version
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long version;
+
+    public BankProduct() {}
+
+    public BankProduct(String title) {
+        this.title = title;
+    }
+}
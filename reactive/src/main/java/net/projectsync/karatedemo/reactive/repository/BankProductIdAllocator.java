@@ -0,0 +1,67 @@
+package net.projectsync.karatedemo.reactive.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Ids from 'bank_product_seq', handed out the way Hibernate's pooled optimizer does (allocationSize = 50):
+ * one nextval() returning 'hi' reserves the ids (hi - 49 .. hi). Both apps can write to the same table without collisions.
+ * Lock free: when a block runs out, concurrent callers may each fetch a new one, the unused rest of a block is skipped
+ */
+@Component
+public class BankProductIdAllocator {
+
+    // Must match @SequenceGenerator(allocationSize) of the JPA entity and the sequence increment
+    static final int ALLOCATION_SIZE = 50;
+
+    private final DatabaseClient databaseClient;
+    private final String nextValueQuery;
+    private final AtomicReference<Block> block = new AtomicReference<>(Block.EMPTY);
+
+    public BankProductIdAllocator(DatabaseClient databaseClient,
+                                  @Value("${bankproducts.id-sequence-query:select nextval('bank_product_seq')}") String nextValueQuery) {
+        this.databaseClient = databaseClient;
+        this.nextValueQuery = nextValueQuery;
+    }
+
+    public Mono<Long> nextId() {
+        return Mono.defer(() -> {
+            long id = block.get().next();
+            if (id > 0) {
+                return Mono.just(id);
+            }
+            return databaseClient.sql(nextValueQuery)
+                    .map(row -> row.get(0, Long.class))
+                    .one()
+                    .map(hi -> {
+                        Block fetched = new Block(Math.max(1, hi - ALLOCATION_SIZE + 1), hi);
+                        long first = fetched.next();
+                        block.set(fetched);
+                        return first;
+                    });
+        });
+    }
+
+    private static final class Block {
+
+        static final Block EMPTY = new Block(1, 0);
+
+        private final AtomicLong next;
+        private final long last;
+
+        Block(long first, long last) {
+            this.next = new AtomicLong(first);
+            this.last = last;
+        }
+
+        // Next free id of this block, or -1 when it is used up
+        long next() {
+            long id = next.getAndIncrement();
+            return id <= last ? id : -1;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package net.projectsync.karatedemo.reactive.repository;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import net.projectsync.karatedemo.reactive.model.BankProduct;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface BankProductRepository extends ReactiveCrudRepository<BankProduct, Long> {
+
+    // Rows are emitted as the driver reads them, on demand of the subscriber
+    Flux<BankProduct> findAllByOrderByIdAsc();
+
+    // Single statement UPDATE, same as the blocking repository. Emits the updated row count, 0 = no such id
+    @Modifying
+    @Query("update bank_product set title = :title, version = coalesce(version, 0) + 1 where id = :id")
+    Mono<Integer> updateTitleById(@Param("id") Long id, @Param("title") String title);
+
+    // Single statement DELETE. Emits the deleted row count, 0 = no such id
+    @Modifying
+    @Query("delete from bank_product where id = :id")
+    Mono<Integer> deleteProductById(@Param("id") Long id);
+}
@@ -0,0 +1,50 @@
+package net.projectsync.karatedemo.reactive.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import net.projectsync.karatedemo.reactive.model.BankProduct;
+import net.projectsync.karatedemo.reactive.repository.BankProductIdAllocator;
+import net.projectsync.karatedemo.reactive.repository.BankProductRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Service
+@RequiredArgsConstructor
+public class BankProductService {
+
+    private final BankProductRepository repository;
+    private final BankProductIdAllocator idAllocator;
+
+    // Client supplied id and version are ignored, a new row is always inserted
+    public Mono<BankProduct> createProduct(BankProduct product) {
+        return idAllocator.nextId().flatMap(id -> {
+            product.setId(id);
+            product.setVersion(null); // null version -> save() inserts
+            return repository.save(product);
+        });
+    }
+
+    public Mono<BankProduct> getProductById(Long id) {
+        return repository.findById(id);
+    }
+
+    // Not collected into a List: each row is written to the response as it arrives, at the pace the client reads
+    public Flux<BankProduct> getAllProducts() {
+        return repository.findAllByOrderByIdAsc();
+    }
+
+    // Empty when there is no product with this id
+    public Mono<BankProduct> updateProduct(Long id, BankProduct product) {
+        return repository.updateTitleById(id, product.getTitle())
+                .filter(updated -> updated > 0)
+                .map(updated -> {
+                    BankProduct result = new BankProduct(product.getTitle());
+                    result.setId(id);
+                    return result;
+                });
+    }
+
+    public Mono<Boolean> deleteProduct(Long id) {
+        return repository.deleteProductById(id).map(deleted -> deleted > 0);
+    }
+}
@@ -0,0 +1,8 @@
+-- Table of the blocking app (JPA ddl-auto), for databases that only the reactive app uses (tests)
+CREATE SEQUENCE IF NOT EXISTS bank_product_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS bank_product (
+    id      BIGINT PRIMARY KEY,
+    title   VARCHAR(255),
+    version BIGINT
+);
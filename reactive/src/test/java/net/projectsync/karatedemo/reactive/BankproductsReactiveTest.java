@@ -0,0 +1,77 @@
+package net.projectsync.karatedemo.reactive;
+
+import com.intuit.karate.Results;
+import com.intuit.karate.Runner;
+import net.projectsync.karatedemo.reactive.model.BankProduct;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs the unchanged bankproducts-crud.feature of the blocking app against the reactive app on R2DBC H2 (profile 'r2dbc-h2')
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("r2dbc-h2")
+class BankproductsReactiveTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Test
+    void testCrudFeature() {
+        System.setProperty("baseUrl", "http://localhost:" + port); // read by karate-config.js
+        try {
+            Results results = Runner.path("classpath:karate/bankproducts/bankproducts-crud.feature")
+                    .reportDir("build/karate-reports")
+                    .parallel(1);
+
+            assertEquals(0, results.getFailCount(), results.getErrorMessages());
+        } finally {
+            System.clearProperty("baseUrl");
+        }
+    }
+
+    @Test
+    void testGetAllProductsStreamsNdjson() {
+        BankProduct first = create("Savings Account");
+        BankProduct second = create("Fixed Deposit");
+
+        Flux<BankProduct> products = webTestClient.get()
+                .uri("/api/v1/bankproducts")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(BankProduct.class)
+                .getResponseBody();
+
+        // Requests one product at a time, the rest is only read on demand
+        StepVerifier.create(products.filter(p -> p.getId() >= first.getId()), 1)
+                .expectNextMatches(p -> p.getId().equals(first.getId()))
+                .thenRequest(1)
+                .expectNextMatches(p -> p.getId().equals(second.getId()))
+                .thenCancel()
+                .verify();
+    }
+
+    private BankProduct create(String title) {
+        return webTestClient.post()
+                .uri("/api/v1/bankproducts")
+                .bodyValue(new BankProduct(title))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(BankProduct.class)
+                .returnResult()
+                .getResponseBody();
+    }
+}
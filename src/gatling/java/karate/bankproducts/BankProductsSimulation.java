@@ -0,0 +1,108 @@
+package karate.bankproducts;
+
+import com.intuit.karate.gatling.javaapi.KarateProtocolBuilder;
+import io.gatling.javaapi.core.PopulationBuilder;
+import io.gatling.javaapi.core.ScenarioBuilder;
+import io.gatling.javaapi.core.Simulation;
+import net.projectsync.karatedemo.KarateDemoApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import java.time.Duration;
+import java.util.List;
+import static com.intuit.karate.gatling.javaapi.KarateDsl.*;
+import static io.gatling.javaapi.core.CoreDsl.*;
+
+/**
+ * Load profiles built from the scenarios of bankproducts-crud.feature (selected by tag).
+ *
+ * System properties (forwarded from -Ploadtest.* by the 'gatlingRun' task):
+ * - loadtest.profile         -> read-heavy (default), write-heavy or saturation
+ * - loadtest.rate            -> scenarios started per second (saturation: per step)
+ * - loadtest.durationSeconds -> duration of the profile
+ * - loadtest.p95Ms / p99Ms   -> latency budgets per endpoint, the run fails when one is exceeded
+ * - loadtest.baseUrl         -> load an already running instance instead of booting one on H2
+ */
+public class BankProductsSimulation extends Simulation {
+
+    private static final String FEATURE = "classpath:karate/bankproducts/bankproducts-crud.feature";
+
+    private final String baseUrl = System.getProperty("loadtest.baseUrl");
+    private ConfigurableApplicationContext application;
+
+    public BankProductsSimulation() {
+        String profile = System.getProperty("loadtest.profile", "read-heavy");
+        double rate = Double.parseDouble(System.getProperty("loadtest.rate", "20"));
+        Duration duration = Duration.ofSeconds(Long.getLong("loadtest.durationSeconds", 60L));
+        int p95BudgetMs = Integer.getInteger("loadtest.p95Ms", 200);
+        int p99BudgetMs = Integer.getInteger("loadtest.p99Ms", 500);
+
+        // Requests are reported per endpoint: 'GET /api/v1/bankproducts/{id}', 'POST /api/v1/bankproducts', ...
+        KarateProtocolBuilder protocol = karateProtocol(
+                uri("/api/v1/bankproducts/{id}").nil(),
+                uri("/api/v1/bankproducts").nil());
+
+        ScenarioBuilder create = scenario("create").exec(karateFeature(FEATURE, "@create"));
+        ScenarioBuilder read = scenario("read").exec(karateFeature(FEATURE, "@read"));
+        ScenarioBuilder update = scenario("update").exec(karateFeature(FEATURE, "@update"));
+        ScenarioBuilder delete = scenario("delete").exec(karateFeature(FEATURE, "@delete"));
+        ScenarioBuilder all = scenario("all").exec(karateFeature(FEATURE));
+
+        List<PopulationBuilder> populations;
+        switch (profile) {
+            case "write-heavy":
+                populations = List.of(
+                        create.injectOpen(constantUsersPerSec(rate * 0.5).during(duration)),
+                        update.injectOpen(constantUsersPerSec(rate * 0.3).during(duration)),
+                        delete.injectOpen(constantUsersPerSec(rate * 0.1).during(duration)),
+                        read.injectOpen(constantUsersPerSec(rate * 0.1).during(duration)));
+                break;
+            case "saturation":
+                // Steps of 'rate' more scenarios per second until the budgets break
+                long steps = Math.max(1, duration.getSeconds() / 15);
+                populations = List.of(
+                        all.injectOpen(incrementUsersPerSec(rate)
+                                .times((int) steps)
+                                .eachLevelLasting(Duration.ofSeconds(10))
+                                .separatedByRampsLasting(Duration.ofSeconds(5))
+                                .startingFrom(rate)));
+                break;
+            case "read-heavy":
+                populations = List.of(
+                        read.injectOpen(constantUsersPerSec(rate * 0.9).during(duration)),
+                        create.injectOpen(constantUsersPerSec(rate * 0.05).during(duration)),
+                        update.injectOpen(constantUsersPerSec(rate * 0.05).during(duration)));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown loadtest.profile: " + profile);
+        }
+
+        // percentile3 = p95, percentile4 = p99 (Gatling defaults). forAll() checks every endpoint separately
+        setUp(populations)
+                .protocols(protocol)
+                .assertions(
+                        forAll().responseTime().percentile3().lt(p95BudgetMs),
+                        forAll().responseTime().percentile4().lt(p99BudgetMs),
+                        global().failedRequests().percent().lte(1.0));
+    }
+
+    @Override
+    public void before() {
+        if (baseUrl != null) {
+            System.setProperty("baseUrl", baseUrl);
+            return;
+        }
+        // Boot the app in-process on H2 and point karate-config.js at it
+        application = new SpringApplicationBuilder(KarateDemoApplication.class)
+                .profiles("h2")
+                .run("--server.port=0");
+        String port = application.getEnvironment().getProperty("local.server.port");
+        System.setProperty("baseUrl", "http://localhost:" + port);
+    }
+
+    @Override
+    public void after() {
+        if (application != null) {
+            application.close();
+        }
+    }
+}
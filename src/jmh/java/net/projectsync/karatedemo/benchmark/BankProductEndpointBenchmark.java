@@ -0,0 +1,95 @@
+package net.projectsync.karatedemo.benchmark;
+
+import com.jayway.jsonpath.JsonPath;
+import net.projectsync.karatedemo.model.BankProduct;
+import net.projectsync.karatedemo.service.BankProductService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import java.util.concurrent.TimeUnit;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+
+/**
+ * Full request path per endpoint through MockMvc: filters -> DispatcherServlet -> controller -> service -> repository (H2),
+ * including JSON (de)serialization of request and response
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class BankProductEndpointBenchmark {
+
+    private static final int ROWS = 1_000;
+    private static final String BASE = "/api/v1/bankproducts";
+
+    private ConfigurableApplicationContext context;
+    private MockMvc mockMvc;
+    private Long existingId;
+    private Long middleId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContexts.start(WebApplicationType.SERVLET);
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+
+        BankProductService service = context.getBean(BankProductService.class);
+        for (int i = 0; i < ROWS; i++) {
+            BankProduct created = service.createProduct(new BankProduct("Product " + i));
+            if (i == 0) {
+                existingId = created.getId();
+            }
+            if (i == ROWS / 2) {
+                middleId = created.getId();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public MvcResult getProductById() throws Exception {
+        return mockMvc.perform(get(BASE + "/" + existingId)).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult getAllProducts() throws Exception {
+        return mockMvc.perform(get(BASE)).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult getProductsPage() throws Exception {
+        return mockMvc.perform(get(BASE).param("after", middleId.toString()).param("limit", "50")).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult exportProducts() throws Exception {
+        MvcResult started = mockMvc.perform(get(BASE + "/export")).andReturn();
+        return mockMvc.perform(asyncDispatch(started)).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult updateProduct() throws Exception {
+        return mockMvc.perform(put(BASE + "/" + existingId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Updated\"}"))
+                .andReturn();
+    }
+
+    // POST and DELETE together, so the table size stays constant across iterations
+    @Benchmark
+    public MvcResult createAndDeleteProduct() throws Exception {
+        MvcResult created = mockMvc.perform(post(BASE)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Temporary\"}"))
+                .andReturn();
+        Number id = JsonPath.read(created.getResponse().getContentAsString(), "$.id");
+        return mockMvc.perform(delete(BASE + "/" + id)).andReturn();
+    }
+}
@@ -0,0 +1,46 @@
+package net.projectsync.karatedemo.benchmark;
+
+import net.projectsync.karatedemo.model.BankProduct;
+import net.projectsync.karatedemo.service.BankProductService;
+import net.projectsync.karatedemo.service.BankProductWriteBehindQueue;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single creates from 32 concurrent callers: one transaction per create (sync) vs the write-behind queue,
+ * where the creates queued meanwhile are written in one batch. SampleTime reports p50/p99 per create,
+ * Throughput the creates per millisecond
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Threads(32)
+public class BankProductIngestBenchmark {
+
+    @Param({"sync", "write-behind"})
+    public String mode;
+
+    private ConfigurableApplicationContext context;
+    private BankProductService service;
+    private BankProductWriteBehindQueue queue;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContexts.start(WebApplicationType.NONE, "--bankproducts.ingest.mode=" + mode);
+        service = context.getBean(BankProductService.class);
+        queue = context.getBeanProvider(BankProductWriteBehindQueue.class).getIfAvailable();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public BankProduct createProduct() {
+        BankProduct product = new BankProduct("Campaign product");
+        return queue != null ? queue.create(product) : service.createProduct(product);
+    }
+}
@@ -0,0 +1,92 @@
+package net.projectsync.karatedemo.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import net.projectsync.karatedemo.model.BankProduct;
+import net.projectsync.karatedemo.model.BankProductView;
+import org.openjdk.jmh.annotations.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON (de)serialization of BankProduct (entity) and BankProductView (read model),
+ * with a default ObjectMapper and with the Blackbird module registered like in the application
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class BankProductJsonBenchmark {
+
+    @Param({"false", "true"})
+    public boolean blackbird;
+
+    private ObjectWriter productWriter;
+    private ObjectWriter listWriter;
+    private ObjectReader productReader;
+    private ObjectWriter viewWriter;
+    private ObjectWriter viewListWriter;
+
+    private BankProduct product;
+    private List<BankProduct> products;
+    private BankProductView view;
+    private List<BankProductView> views;
+    private byte[] productJson;
+
+    @Setup
+    public void setUp() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        if (blackbird) {
+            objectMapper.registerModule(new BlackbirdModule());
+        }
+        productWriter = objectMapper.writerFor(BankProduct.class);
+        listWriter = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, BankProduct.class));
+        productReader = objectMapper.readerFor(BankProduct.class);
+        viewWriter = objectMapper.writerFor(BankProductView.class);
+        viewListWriter = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, BankProductView.class));
+
+        product = new BankProduct("Savings Account");
+        product.setId(42L);
+        product.setVersion(3L);
+
+        view = new BankProductView(42L, "Savings Account", 3L);
+
+        products = new ArrayList<>();
+        views = new ArrayList<>();
+        for (long i = 1; i <= 100; i++) {
+            BankProduct p = new BankProduct("Product " + i);
+            p.setId(i);
+            p.setVersion(0L);
+            products.add(p);
+            views.add(new BankProductView(i, "Product " + i, 0L));
+        }
+        productJson = productWriter.writeValueAsBytes(product);
+    }
+
+    @Benchmark
+    public byte[] serializeProduct() throws Exception {
+        return productWriter.writeValueAsBytes(product);
+    }
+
+    @Benchmark
+    public byte[] serializeList100() throws Exception {
+        return listWriter.writeValueAsBytes(products);
+    }
+
+    @Benchmark
+    public byte[] serializeView() throws Exception {
+        return viewWriter.writeValueAsBytes(view);
+    }
+
+    @Benchmark
+    public byte[] serializeViewList100() throws Exception {
+        return viewListWriter.writeValueAsBytes(views);
+    }
+
+    @Benchmark
+    public BankProduct deserializeProduct() throws Exception {
+        return productReader.readValue(productJson);
+    }
+}
@@ -0,0 +1,69 @@
+package net.projectsync.karatedemo.benchmark;
+
+import net.projectsync.karatedemo.model.BankProduct;
+import net.projectsync.karatedemo.model.BankProductView;
+import net.projectsync.karatedemo.model.CursorPage;
+import net.projectsync.karatedemo.service.BankProductService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Default settings (show-sql to stdout, pool of 5) vs profile 'perf' (sampled async SQL log, pool sized from the cores,
+ * larger plan cache), with 8 concurrent callers and the product cache off, so every call reaches the database.
+ * On H2 the pgjdbc settings of 'perf' have no effect: run against PostgreSQL to include them
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Threads(8)
+public class BankProductProfileBenchmark {
+
+    private static final int ROWS = 1_000;
+
+    @Param({"default", "perf"})
+    public String profile;
+
+    private ConfigurableApplicationContext context;
+    private BankProductService service;
+    private Long existingId;
+    private Long middleId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String profileArg = "perf".equals(profile) ? "--spring.profiles.active=perf" : "--spring.jpa.show-sql=true";
+        context = BenchmarkContexts.start(WebApplicationType.NONE, profileArg, "--bankproducts.cache.enabled=false");
+        service = context.getBean(BankProductService.class);
+        for (int i = 0; i < ROWS; i++) {
+            BankProduct created = service.createProduct(new BankProduct("Product " + i));
+            if (i == 0) {
+                existingId = created.getId();
+            }
+            if (i == ROWS / 2) {
+                middleId = created.getId();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<BankProductView> getProductById() {
+        return service.getProductById(existingId);
+    }
+
+    @Benchmark
+    public CursorPage<BankProductView> getProductsPage() {
+        return service.getProductsPage(middleId, 50);
+    }
+
+    @Benchmark
+    public Optional<BankProduct> updateProduct() {
+        return service.updateProduct(existingId, new BankProduct("Updated"));
+    }
+}
@@ -0,0 +1,69 @@
+package net.projectsync.karatedemo.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.projectsync.karatedemo.model.BankProduct;
+import net.projectsync.karatedemo.repository.BankProductRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read path before and after the read model: load + serialize entities (findById/findAll) vs
+ * load + serialize BankProductView constructor projections, with the application ObjectMapper.
+ * Compare gc.alloc.rate.norm (bytes/op) of the entity* and view* pairs
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class BankProductReadPathBenchmark {
+
+    private static final int ROWS = 1_000;
+
+    @Param({"false", "true"})
+    public boolean blackbird;
+
+    private ConfigurableApplicationContext context;
+    private BankProductRepository repository;
+    private ObjectMapper objectMapper;
+    private Long existingId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContexts.start(WebApplicationType.NONE, "--bankproducts.json.blackbird=" + blackbird);
+        repository = context.getBean(BankProductRepository.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+        List<BankProduct> products = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            products.add(new BankProduct("Product " + i));
+        }
+        existingId = repository.saveAll(products).get(0).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] entityById() throws Exception {
+        return objectMapper.writeValueAsBytes(repository.findById(existingId).orElseThrow());
+    }
+
+    @Benchmark
+    public byte[] viewById() throws Exception {
+        return objectMapper.writeValueAsBytes(repository.findViewById(existingId).orElseThrow());
+    }
+
+    @Benchmark
+    public byte[] entityAll() throws Exception {
+        return objectMapper.writeValueAsBytes(repository.findAll());
+    }
+
+    @Benchmark
+    public byte[] viewAll() throws Exception {
+        return objectMapper.writeValueAsBytes(repository.findAllViews());
+    }
+}
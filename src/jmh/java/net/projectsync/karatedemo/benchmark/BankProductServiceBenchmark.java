@@ -0,0 +1,79 @@
+package net.projectsync.karatedemo.benchmark;
+
+import net.projectsync.karatedemo.model.BankProduct;
+import net.projectsync.karatedemo.model.BankProductView;
+import net.projectsync.karatedemo.model.CursorPage;
+import net.projectsync.karatedemo.service.BankProductService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BankProductService CRUD against an embedded H2 database (service -> repository -> JDBC)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class BankProductServiceBenchmark {
+
+    private static final int ROWS = 1_000;
+
+    // Read path with and without the read-through cache
+    @Param({"true", "false"})
+    public boolean cacheEnabled;
+
+    private ConfigurableApplicationContext context;
+    private BankProductService service;
+    private Long existingId;
+    private Long middleId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContexts.start(WebApplicationType.NONE, "--bankproducts.cache.enabled=" + cacheEnabled);
+        service = context.getBean(BankProductService.class);
+        for (int i = 0; i < ROWS; i++) {
+            BankProduct created = service.createProduct(new BankProduct("Product " + i));
+            if (i == 0) {
+                existingId = created.getId();
+            }
+            if (i == ROWS / 2) {
+                middleId = created.getId();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<BankProductView> getProductById() {
+        return service.getProductById(existingId);
+    }
+
+    @Benchmark
+    public List<BankProductView> getAllProducts() {
+        return service.getAllProducts();
+    }
+
+    @Benchmark
+    public CursorPage<BankProductView> getProductsPage() {
+        return service.getProductsPage(middleId, 50);
+    }
+
+    @Benchmark
+    public Optional<BankProduct> updateProduct() {
+        return service.updateProduct(existingId, new BankProduct("Updated"));
+    }
+
+    // Create and delete together, so the table size stays constant across iterations
+    @Benchmark
+    public boolean createAndDeleteProduct() {
+        BankProduct created = service.createProduct(new BankProduct("Temporary"));
+        return service.deleteProduct(created.getId());
+    }
+}
@@ -0,0 +1,50 @@
+package net.projectsync.karatedemo.benchmark;
+
+import net.projectsync.karatedemo.KarateDemoApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Starts the application for benchmarks on an in-memory H2 database instead of PostgreSQL.
+ * Properties are passed as command line arguments, so they take precedence over application.properties.
+ * An extra argument replaces the H2 argument of the same property.
+ */
+final class BenchmarkContexts {
+
+    private static final List<String> H2_ARGS = List.of(
+            "--spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1",
+            "--spring.datasource.driver-class-name=org.h2.Driver",
+            "--spring.datasource.username=sa",
+            "--spring.datasource.password=",
+            "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+            "--spring.jpa.properties.hibernate.default_schema=",
+            "--spring.jpa.hibernate.ddl-auto=create-drop",
+            "--spring.jpa.show-sql=false",
+            "--server.port=0",
+            "--logging.level.root=WARN");
+
+    private BenchmarkContexts() {
+    }
+
+    static ConfigurableApplicationContext start(WebApplicationType webApplicationType, String... extraArgs) {
+        List<String> args = new ArrayList<>();
+        for (String arg : H2_ARGS) {
+            if (Arrays.stream(extraArgs).noneMatch(extra -> extra.startsWith(name(arg)))) {
+                args.add(arg);
+            }
+        }
+        args.addAll(Arrays.asList(extraArgs));
+        return new SpringApplicationBuilder(KarateDemoApplication.class)
+                .web(webApplicationType)
+                .run(args.toArray(new String[0]));
+    }
+
+    // "--name=value" -> "--name="
+    private static String name(String arg) {
+        return arg.substring(0, arg.indexOf('=') + 1);
+    }
+}
@@ -0,0 +1,276 @@
+package net.projectsync.karatedemo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Application specific settings, bound from 'bankproducts.*' in application.properties
+ */
+@Data
+@ConfigurationProperties(prefix = "bankproducts")
+public class BankProductProperties {
+
+    private final Batch batch = new Batch();
+
+    private final Cache cache = new Cache();
+
+    private final Changes changes = new Changes();
+
+    private final Execution execution = new Execution();
+
+    private final Idempotency idempotency = new Idempotency();
+
+    private final Ingest ingest = new Ingest();
+
+    private final Lookup lookup = new Lookup();
+
+    private final RateLimit rateLimit = new RateLimit();
+
+    private final ReadReplica readReplica = new ReadReplica();
+
+    private final Startup startup = new Startup();
+
+    private final Stream stream = new Stream();
+
+    @Data
+    public static class Batch {
+
+        // Items persisted per transaction. Keep it a multiple of hibernate.jdbc.batch_size
+        private int chunkSize = 500;
+
+        // Upper bound of items accepted by one bulk request
+        private int maxItems = 100_000;
+    }
+
+    @Data
+    public static class Cache {
+
+        // false -> every read goes to the database
+        private boolean enabled = true;
+
+        // Entries kept at most, least recently/frequently used ones are evicted first
+        private long maximumSize = 10_000;
+
+        // Entries are reloaded at the latest after this time, even if no write went through this node
+        private Duration ttl = Duration.ofMinutes(10);
+    }
+
+    @Data
+    public static class Idempotency {
+
+        // Where the responses of requests with an Idempotency-Key are kept:
+        // MEMORY (this node, bounded) or JPA (table idempotency_record, shared by all nodes)
+        private Store store = Store.MEMORY;
+
+        // A key can be replayed for this long after its first request
+        private Duration ttl = Duration.ofHours(24);
+
+        // Keys kept at most by the MEMORY store, least recently used ones are evicted first
+        private long maximumSize = 100_000;
+
+        // Longest wait of a duplicate request for the first one with the same key, then 409
+        private Duration waitTimeout = Duration.ofSeconds(10);
+
+        // A key still in progress after this time is considered abandoned (node crashed) and may be executed again
+        private Duration pendingTimeout = Duration.ofMinutes(1);
+
+        public enum Store {
+            MEMORY, JPA
+        }
+    }
+
+    @Data
+    public static class Ingest {
+
+        // How POST /api/v1/bankproducts persists: SYNC (one transaction per request) or
+        // WRITE_BEHIND (queued, written in batches by one writer thread, see BankProductWriteBehindQueue)
+        private Mode mode = Mode.SYNC;
+
+        // Products waiting to be written at most, past that creates are rejected with 429
+        private int capacity = 10_000;
+
+        // Products written per transaction at most. Keep it a multiple of hibernate.jdbc.batch_size
+        private int maxBatchSize = 500;
+
+        // Longest wait for a free slot in a full queue before the create is rejected
+        private Duration enqueueTimeout = Duration.ZERO;
+
+        // Longest wait of a request for its product to be written, then 503 (the product may still be written)
+        private Duration responseTimeout = Duration.ofSeconds(5);
+
+        // Sent as Retry-After (seconds) with a 429 or 503
+        private Duration retryAfter = Duration.ofSeconds(1);
+
+        public enum Mode {
+            SYNC, WRITE_BEHIND
+        }
+    }
+
+    @Data
+    public static class Lookup {
+
+        // Ids per IN list. Hibernate pads each list to the next power of 2 (in_clause_parameter_padding),
+        // so a chunk size that is a power of 2 keeps the number of distinct statements small
+        private int chunkSize = 128;
+
+        // Upper bound of ids accepted by one lookup request
+        private int maxIds = 1_000;
+    }
+
+    @Data
+    public static class Stream {
+
+        // Updates buffered per subscriber. A subscriber that falls this far behind is disconnected
+        private int bufferSize = 64;
+
+        // Subscribers per node at most, further ones get 503. Keep server.tomcat.max-connections above it
+        private int maxSubscribers = 20_000;
+
+        // A subscription ends after this time, EventSource clients reconnect by themselves
+        private Duration timeout = Duration.ofMinutes(30);
+
+        // Comment sent to idle subscribers, detects closed connections and keeps proxies from closing idle ones
+        private Duration heartbeat = Duration.ofSeconds(30);
+
+        // Threads that write the buffered updates to the subscribers
+        private int senderThreads = 4;
+
+        // A write to a subscriber blocked for longer than this disconnects it (slow consumer). The write holds its
+        // sender thread until the servlet container gives up on it, the pool gets a replacement thread meanwhile
+        private Duration sendTimeout = Duration.ofSeconds(10);
+    }
+
+    @Data
+    public static class Startup {
+
+        // true -> the app stops once it is ready, after the startup report (startup benchmark, CDS training run)
+        private boolean exitAfterReady = false;
+
+        // CSV file the startup report line is appended to, none by default
+        private String reportFile;
+
+        // First column of the report line, e.g. the mode being measured
+        private String label = "default";
+
+        // true -> bank_product_seq is moved past max(id) on startup if it is behind (IdSequenceInitializer)
+        private boolean alignIdSequence = true;
+    }
+
+    @Data
+    public static class RateLimit {
+
+        // Token bucket per client in front of /api/v1/bankproducts (see RateLimitConfig), off by default
+        private boolean enabled = false;
+
+        // Tokens added per second and bucket size (the burst a client may send at once)
+        private double tokensPerSecond = 20;
+        private int burst = 40;
+
+        // Header naming the client, only when a trusted gateway sets it. Empty = the remote address
+        private String clientHeader = "";
+
+        // Clients with a bucket, least recently seen ones are dropped first
+        private long maxClients = 100_000;
+
+        // Tokens taken by the expensive requests, every other request takes 1
+        private int listCost = 10;     // GET /api/v1/bankproducts (whole catalog)
+        private int exportCost = 50;   // GET /api/v1/bankproducts/export
+        private int batchCost = 10;    // POST /api/v1/bankproducts/batch
+    }
+
+    @Data
+    public static class ReadReplica {
+
+        // true -> @Transactional(readOnly = true) methods read from the replicas (see ReadReplicaConfig)
+        private boolean enabled = false;
+
+        // JDBC URLs of the replicas, same driver as spring.datasource
+        private List<String> urls = new ArrayList<>();
+
+        // Credentials of the replicas, null -> those of spring.datasource
+        private String username;
+        private String password;
+
+        // Connections per replica pool
+        private int maximumPoolSize = 5;
+
+        // A replica further behind than this is not used, reads go to the primary until it has caught up
+        private Duration maxLag = Duration.ofSeconds(5);
+
+        // How often the lag of every replica is measured
+        private Duration lagCheckInterval = Duration.ofSeconds(2);
+
+        // Lag in seconds, measured on the replica. 0 when it has replayed everything it has received
+        private String lagQuery = "select case when pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0 "
+                + "else extract(epoch from now() - pg_last_xact_replay_timestamp()) end";
+
+        // Read-your-writes (see ReadYourWrites): after a write the client gets the primary's WAL position in this cookie,
+        // its reads go only to replicas that have replayed that position
+        private String positionCookie = "replica-position";
+
+        // WAL position on the primary after a commit, as a number
+        private String writePositionQuery = "select (pg_current_wal_lsn() - '0/0'::pg_lsn)::bigint";
+
+        // WAL position a replica has replayed, as a number comparable with the write position. Measured with the lag
+        private String replayPositionQuery = "select (pg_last_wal_replay_lsn() - '0/0'::pg_lsn)::bigint";
+    }
+
+    @Data
+    public static class Changes {
+
+        // Changes are served once they are this old. A transaction that took a lower seq but commits later
+        // is then not skipped by consumers that already moved past it. Must exceed the longest write transaction
+        private Duration settle = Duration.ofSeconds(1);
+
+        // A missing seq holds back the changes after it until they are this old (database clock): the transaction
+        // that took it may still commit. A seq still missing then was rolled back
+        private Duration gapTimeout = Duration.ofSeconds(10);
+
+        // Changes are deleted after this time, consumers must read more often than that
+        private Duration retention = Duration.ofDays(7);
+
+        // How often changes older than 'retention' are deleted
+        private Duration pruneInterval = Duration.ofMinutes(10);
+
+        // Longest long-poll wait (GET /changes?wait=...)
+        private Duration maxWait = Duration.ofSeconds(30);
+
+        // Long-polls waiting at the same time at most, further ones are answered right away
+        private int maxWaiters = 1_000;
+    }
+
+    @Data
+    public static class Execution {
+
+        // Threads that run the requests: PLATFORM (Tomcat worker pool) or VIRTUAL (one virtual thread per request, Java 21+)
+        private Mode mode = Mode.PLATFORM;
+
+        // Requests to /api/** that are processed at the same time, the others wait for a permit in arrival order
+        // Keep it a small multiple of spring.datasource.hikari.maximumPoolSize. 0 = no limit
+        private int maxConcurrentRequests = 20;
+
+        // Longest wait for a permit before the request is rejected with 429
+        private Duration queueTimeout = Duration.ofMillis(500);
+
+        // Sent as Retry-After (seconds) with a 429
+        private Duration retryAfter = Duration.ofSeconds(1);
+
+        // Adaptive limit (AIMD): starts at max-concurrent-requests, shrinks by 'backoff-ratio' whenever a request
+        // takes longer than 'latency-threshold', grows by 1 per faster request, never below 'min-concurrent-requests'
+        private boolean adaptive = false;
+
+        // Keep it at about spring.datasource.hikari.maximumPoolSize
+        private int minConcurrentRequests = 5;
+
+        private Duration latencyThreshold = Duration.ofMillis(250);
+
+        private double backoffRatio = 0.9;
+
+        public enum Mode {
+            PLATFORM, VIRTUAL
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package net.projectsync.karatedemo.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import net.projectsync.karatedemo.controller.AdmissionControlFilter;
+import net.projectsync.karatedemo.controller.AimdLimit;
+import net.projectsync.karatedemo.service.IdempotencyService;
+import javax.servlet.http.HttpServletRequest;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Request execution, see 'bankproducts.execution.*' in application.properties
+ * - mode VIRTUAL         -> Tomcat runs every request on its own virtual thread, a request blocked on JDBC no longer pins a worker thread
+ * - admission control    -> at most 'max-concurrent-requests' requests to /api/** run at once, the others get a fair, bounded wait and then 429
+ *                           with 'adaptive' the limit follows the request latency within [min-concurrent-requests, max-concurrent-requests],
+ *                           sampled on the cheap requests only (see sampled())
+ */
+@Slf4j
+@Configuration
+public class ExecutionConfig {
+
+    @Bean
+    public FilterRegistrationBean<AdmissionControlFilter> admissionControlFilter(BankProductProperties properties,
+                                                                                 ObjectProvider<MeterRegistry> meterRegistry) {
+        BankProductProperties.Execution execution = properties.getExecution();
+        int limit = execution.getMaxConcurrentRequests();
+        AdmissionControlFilter filter = execution.isAdaptive()
+                ? new AdmissionControlFilter(new AimdLimit(execution.getMinConcurrentRequests(), Math.max(limit, 1),
+                        execution.getLatencyThreshold(), execution.getBackoffRatio()), execution.getQueueTimeout(), execution.getRetryAfter())
+                : new AdmissionControlFilter(Math.max(limit, 1), execution.getQueueTimeout(), execution.getRetryAfter());
+        FilterRegistrationBean<AdmissionControlFilter> registration = new FilterRegistrationBean<>(filter);
+        // Long-polls of the change feed and SSE subscriptions wait without using the database.
+        // URI first: getParameter() parses the body of form POSTs, which only the change feed may pay for
+        registration.getFilter().setExempt(request -> request.getRequestURI().endsWith("/api/v1/bankproducts/stream")
+                || (request.getRequestURI().endsWith("/api/v1/bankproducts/changes") && request.getParameter("wait") != null));
+        registration.getFilter().setSampled(request -> sampled(request, properties));
+        registration.setEnabled(limit > 0);
+        registration.addUrlPatterns("/api/*");                  // actuator endpoints stay reachable under overload
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10); // reject before any other work is done
+        if (limit > 0) {
+            meterRegistry.ifAvailable(registry -> {
+                Gauge.builder("bankproducts.admission.limit", filter, AdmissionControlFilter::limit)
+                        .description("Requests to /api/** processed at the same time at most")
+                        .register(registry);
+                FunctionCounter.builder("bankproducts.requests.rejected", filter, AdmissionControlFilter::rejected)
+                        .description("Requests rejected with 429")
+                        .tag("reason", "concurrency")
+                        .register(registry);
+            });
+        }
+        return registration;
+    }
+
+    // Whether the latency of a request says something about overload: one latency-threshold fits the cheap requests only.
+    // Not sampled, as they are slow by design:
+    // - requests the rate limiter charges more than one token (export, batch, whole catalog), see RateLimitConfig.cost()
+    // - id lookups (up to 'bankproducts.lookup.max-ids' ids)
+    // - requests with an Idempotency-Key (a duplicate waits for the first request to finish)
+    // - write-behind creates (wait for the writer thread's batch, up to 'bankproducts.ingest.response-timeout')
+    static boolean sampled(HttpServletRequest request, BankProductProperties properties) {
+        String uri = request.getRequestURI();
+        if (RateLimitConfig.cost(request, properties.getRateLimit()) > 1
+                || uri.endsWith("/api/v1/bankproducts/lookup") || request.getParameter("ids") != null
+                || request.getHeader(IdempotencyService.HEADER) != null) {
+            return false;
+        }
+        return !(properties.getIngest().getMode() == BankProductProperties.Ingest.Mode.WRITE_BEHIND
+                && "POST".equals(request.getMethod()) && uri.endsWith("/api/v1/bankproducts"));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "bankproducts.execution.mode", havingValue = "virtual")
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadExecutor() {
+        ExecutorService executor = newVirtualThreadPerTaskExecutor();
+        return protocolHandler -> {
+            if (executor != null) {
+                protocolHandler.setExecutor(executor);
+            }
+        };
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() is looked up at runtime, the code is compiled for Java 11
+    // On an older runtime the Tomcat worker pool is kept
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.warn("bankproducts.execution.mode=virtual needs Java 21+, running on {}: keeping the platform thread pool",
+                    Runtime.version());
+            return null;
+        }
+    }
+}
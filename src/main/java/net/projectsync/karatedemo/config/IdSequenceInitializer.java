@@ -0,0 +1,76 @@
+package net.projectsync.karatedemo.config;
+
+import lombok.extern.slf4j.Slf4j;
+import net.projectsync.karatedemo.model.BankProduct;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves bank_product_seq past the existing ids, once Hibernate has created or updated the schema and before any insert.
+ *
+ * Databases created while BankProduct used IDENTITY already hold rows: ddl-auto=update then creates bank_product_seq
+ * starting at 1, and the ids it hands out would collide with theirs. If the sequence is behind max(id), it is set to
+ * max(id) rounded up to the allocation size, so the next pooled block starts right after it.
+ * A sequence already past max(id) is left alone: it never moves backwards, and a start with nothing to do costs one query.
+ *
+ * Runs in the startup, not as an ApplicationRunner, so requests never see the misaligned sequence.
+ * Off with the 'fast-start' profile, where the schema is only validated: a normal start has aligned it.
+ */
+@Slf4j
+@Component
+@DependsOn("entityManagerFactory")
+@ConditionalOnProperty(name = "bankproducts.startup.align-id-sequence", havingValue = "true", matchIfMissing = true)
+public class IdSequenceInitializer implements InitializingBean {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String table;
+    private final String sequence;
+
+    public IdSequenceInitializer(JdbcTemplate jdbcTemplate,
+                                 @Value("${spring.jpa.properties.hibernate.default_schema:}") String schema) {
+        this.jdbcTemplate = jdbcTemplate;
+        String schemaPrefix = schema.isBlank() ? "" : schema + ".";
+        this.table = schemaPrefix + "bank_product";
+        this.sequence = schemaPrefix + "bank_product_seq";
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+        Long maxId = jdbcTemplate.queryForObject("select coalesce(max(id), 0) from " + table, Long.class);
+        if (maxId == null || maxId == 0) {
+            return;
+        }
+        long aligned = roundUp(maxId);
+        if ("PostgreSQL".equals(database)) {
+            // last_value = upper end of the last block handed out, the next block starts after it.
+            // One statement: the sequence is read and set under the row lock setval takes
+            Long set = jdbcTemplate.query("select setval('" + sequence + "', ?) from " + sequence + " where last_value <= ?",
+                    rs -> rs.next() ? rs.getLong(1) : null, aligned, maxId);
+            if (set != null) {
+                log.info("bank_product_seq was behind max(id) {}, set to {}", maxId, set);
+            }
+        } else if ("H2".equals(database)) {
+            // base_value = next value of the sequence, the upper end of the next block
+            Long next = jdbcTemplate.queryForObject("select base_value from information_schema.sequences "
+                    + "where lower(sequence_name) = 'bank_product_seq'", Long.class);
+            if (next != null && next - BankProduct.ID_ALLOCATION_SIZE < maxId) {
+                jdbcTemplate.execute("alter sequence " + sequence + " restart with " + (aligned + BankProduct.ID_ALLOCATION_SIZE));
+                log.info("bank_product_seq was behind max(id) {}, set to {}", maxId, aligned);
+            }
+        } else {
+            log.warn("Can not check bank_product_seq against max(id) {} on {}, align it manually", maxId, database);
+        }
+    }
+
+    // Smallest multiple of the allocation size >= id
+    static long roundUp(long id) {
+        long size = BankProduct.ID_ALLOCATION_SIZE;
+        return (id + size - 1) / size * size;
+    }
+}
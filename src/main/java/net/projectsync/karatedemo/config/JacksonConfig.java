@@ -0,0 +1,21 @@
+package net.projectsync.karatedemo.config;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Jackson modules, registered by Spring Boot on the application ObjectMapper (responses, NDJSON export, batch input)
+ */
+@Configuration
+public class JacksonConfig {
+
+    // Property access through LambdaMetafactory generated accessors instead of reflective Method/Field calls
+    @Bean
+    @ConditionalOnProperty(name = "bankproducts.json.blackbird", havingValue = "true", matchIfMissing = true)
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+}
@@ -0,0 +1,21 @@
+package net.projectsync.karatedemo.config;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import net.projectsync.karatedemo.service.BankProductCache;
+
+/**
+ * Meters that Spring Boot does not register on its own.
+ * HTTP, repository, Hikari and Hibernate meters are auto-configured, see 'management.*' in application.properties
+ */
+@Configuration
+public class MetricsConfig {
+
+    // cache.gets{result=hit|miss}, cache.evictions, cache.size with tag cache=bankProducts
+    @Bean
+    public MeterBinder bankProductCacheMetrics(BankProductCache bankProductCache) {
+        return registry -> CaffeineCacheMetrics.monitor(registry, bankProductCache.nativeCache(), "bankProducts");
+    }
+}
@@ -0,0 +1,41 @@
+package net.projectsync.karatedemo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+
+/**
+ * Profile 'perf': sizes the Hikari pool from the CPU cores instead of a fixed maximumPoolSize.
+ * connections = cores * connections-per-core + spindles (PostgreSQL wiki formula), as a fixed size pool (minimumIdle = maximum)
+ * More connections than that only add context switching and lock contention in the database.
+ */
+@Slf4j
+@Configuration
+@Profile("perf")
+public class PoolSizingConfig {
+
+    // static: a BeanPostProcessor must be created before the other beans of this configuration
+    @Bean
+    public static BeanPostProcessor hikariPoolSizing(Environment environment) {
+        int perCore = environment.getProperty("bankproducts.pool.connections-per-core", Integer.class, 2);
+        int spindles = environment.getProperty("bankproducts.pool.spindles", Integer.class, 1);
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource) {
+                    int cores = Runtime.getRuntime().availableProcessors();
+                    int size = cores * perCore + spindles;
+                    HikariDataSource dataSource = (HikariDataSource) bean;
+                    dataSource.setMaximumPoolSize(size);
+                    dataSource.setMinimumIdle(size);
+                    log.info("Connection pool sized for {} cores: {} connections", cores, size);
+                }
+                return bean;
+            }
+        };
+    }
+}
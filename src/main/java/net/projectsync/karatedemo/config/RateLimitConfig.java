@@ -0,0 +1,59 @@
+package net.projectsync.karatedemo.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.projectsync.karatedemo.controller.RateLimitFilter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Per-client rate limit in front of /api/v1/bankproducts, see 'bankproducts.rate-limit.*' in application.properties.
+ * Runs before admission control: a client over its rate is rejected without waiting for, or taking, a permit
+ */
+@Configuration
+@ConditionalOnProperty(name = "bankproducts.rate-limit.enabled", havingValue = "true")
+public class RateLimitConfig {
+
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilter(BankProductProperties properties,
+                                                                   ObjectProvider<MeterRegistry> meterRegistry) {
+        BankProductProperties.RateLimit rateLimit = properties.getRateLimit();
+        RateLimitFilter filter = new RateLimitFilter(rateLimit.getTokensPerSecond(), rateLimit.getBurst(),
+                rateLimit.getMaxClients(), rateLimit.getClientHeader(), request -> cost(request, rateLimit));
+        FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/api/v1/bankproducts/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 5);
+        meterRegistry.ifAvailable(registry -> {
+            FunctionCounter.builder("bankproducts.requests.rejected", filter, RateLimitFilter::rejected)
+                    .description("Requests rejected with 429")
+                    .tag("reason", "rate")
+                    .register(registry);
+            Gauge.builder("bankproducts.ratelimit.clients", filter, RateLimitFilter::clients)
+                    .description("Clients with a token bucket")
+                    .register(registry);
+        });
+        return registration;
+    }
+
+    // Tokens taken by a request: the whole catalog, the export and bulk creates cost more than a single product
+    static int cost(HttpServletRequest request, BankProductProperties.RateLimit rateLimit) {
+        String uri = request.getRequestURI();
+        if (uri.endsWith("/api/v1/bankproducts/export")) {
+            return rateLimit.getExportCost();
+        }
+        if (uri.endsWith("/api/v1/bankproducts/batch")) {
+            return rateLimit.getBatchCost();
+        }
+        if (uri.endsWith("/api/v1/bankproducts") && "GET".equals(request.getMethod())
+                && request.getParameter("limit") == null && request.getParameter("ids") == null) {
+            return rateLimit.getListCost();
+        }
+        return 1;
+    }
+}
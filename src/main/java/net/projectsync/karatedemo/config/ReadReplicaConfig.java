@@ -0,0 +1,45 @@
+package net.projectsync.karatedemo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import javax.sql.DataSource;
+
+/**
+ * Read/write splitting, enabled with bankproducts.read-replica.enabled=true (see ReplicaRoutingDataSource).
+ * Replaces the auto-configured DataSource: the primary pool is still configured by spring.datasource.*
+ */
+@Configuration
+@ConditionalOnProperty(name = "bankproducts.read-replica.enabled", havingValue = "true")
+public class ReadReplicaConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public ReadReplicas readReplicas(BankProductProperties properties, DataSourceProperties dataSourceProperties) {
+        return new ReadReplicas(properties.getReadReplica(), dataSourceProperties);
+    }
+
+    @Bean
+    public ReadYourWrites readYourWrites(HikariDataSource primaryDataSource, BankProductProperties properties) {
+        return new ReadYourWrites(primaryDataSource, properties.getReadReplica());
+    }
+
+    // Used by JPA, JdbcTemplate and everything else that needs 'the' DataSource
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, ReadReplicas readReplicas, ReadYourWrites readYourWrites,
+                                 BankProductProperties properties) {
+        return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(
+                primaryDataSource, readReplicas, properties.getReadReplica().getMaxLag(), readYourWrites));
+    }
+}
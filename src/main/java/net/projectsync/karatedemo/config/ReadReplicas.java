@@ -0,0 +1,99 @@
+package net.projectsync.karatedemo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Connection pools of the read replicas and their replication lag and replayed WAL position, measured every 'lag-check-interval'.
+ * A replica whose lag query fails counts as unavailable until the next successful check.
+ */
+@Slf4j
+public class ReadReplicas implements AutoCloseable {
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+    private final List<JdbcTemplate> lagChecks = new ArrayList<>();
+    private final AtomicReferenceArray<Duration> lags;
+    private final AtomicReferenceArray<Long> replayPositions;
+    private final String lagQuery;
+    private final String replayPositionQuery;
+    private final ScheduledExecutorService scheduler;
+
+    public ReadReplicas(BankProductProperties.ReadReplica config, DataSourceProperties primary) {
+        for (int i = 0; i < config.getUrls().size(); i++) {
+            HikariDataSource pool = new HikariDataSource();
+            pool.setPoolName("replica-" + i);
+            pool.setJdbcUrl(config.getUrls().get(i));
+            pool.setDriverClassName(primary.determineDriverClassName());
+            pool.setUsername(config.getUsername() != null ? config.getUsername() : primary.determineUsername());
+            pool.setPassword(config.getPassword() != null ? config.getPassword() : primary.determinePassword());
+            pool.setMaximumPoolSize(config.getMaximumPoolSize());
+            pool.setReadOnly(true);
+            // Do not fail the startup when a replica is down, it is just not used
+            pool.setInitializationFailTimeout(-1);
+            pools.add(pool);
+            lagChecks.add(new JdbcTemplate(pool));
+        }
+        this.lags = new AtomicReferenceArray<>(pools.size());
+        this.replayPositions = new AtomicReferenceArray<>(pools.size());
+        this.lagQuery = config.getLagQuery();
+        this.replayPositionQuery = config.getReplayPositionQuery();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "replica-lag-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = config.getLagCheckInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::refresh, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public int size() {
+        return pools.size();
+    }
+
+    public DataSource dataSource(int index) {
+        return pools.get(index);
+    }
+
+    // Last measured lag, null when the replica is unavailable or not checked yet
+    public Duration lag(int index) {
+        return lags.get(index);
+    }
+
+    // Last measured replayed WAL position (see ReadYourWrites), null when unknown: then no client with a write waits for it
+    public Long replayPosition(int index) {
+        return replayPositions.get(index);
+    }
+
+    // Measures the lag and the replayed position of every replica now (also called by the scheduler)
+    public void refresh() {
+        for (int i = 0; i < lagChecks.size(); i++) {
+            try {
+                Double seconds = lagChecks.get(i).queryForObject(lagQuery, Double.class);
+                replayPositions.set(i, lagChecks.get(i).queryForObject(replayPositionQuery, Long.class));
+                lags.set(i, Duration.ofMillis(seconds == null ? 0 : (long) (seconds * 1000)));
+            } catch (DataAccessException e) {
+                replayPositions.set(i, null);
+                if (lags.getAndSet(i, null) != null) {
+                    log.warn("Read replica {} unavailable, reads fall back to the primary: {}", i, e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        pools.forEach(HikariDataSource::close);
+    }
+}
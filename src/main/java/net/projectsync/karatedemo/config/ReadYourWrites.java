@@ -0,0 +1,95 @@
+package net.projectsync.karatedemo.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.util.WebUtils;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.sql.DataSource;
+
+/**
+ * Read-your-writes per client, for ReplicaRoutingDataSource.
+ *
+ * After a commit made for an HTTP request, the primary's WAL position ('write-position-query') is sent back in the
+ * 'position-cookie' cookie. Reads of a request carrying that cookie use only replicas that have replayed at least
+ * that position ('replay-position-query', measured by ReadReplicas with the lag), otherwise the primary.
+ * Requests without the cookie (other clients, or writes made on another node without it) use any replica within max-lag,
+ * so a steady write rate of some clients does not move the reads of all the others to the primary.
+ *
+ * Only the thread of the request is covered: commits of background threads (e.g. the write-behind writer) have no client,
+ * whoever waited for them calls recordWrite() itself.
+ */
+@Slf4j
+public class ReadYourWrites {
+
+    // Position of a write of the current request, set before its response has the cookie
+    private static final String POSITION_ATTRIBUTE = ReadYourWrites.class.getName() + ".position";
+
+    private final JdbcTemplate primary;
+    private final String writePositionQuery;
+    private final String cookieName;
+
+    public ReadYourWrites(DataSource primary, BankProductProperties.ReadReplica config) {
+        this.primary = new JdbcTemplate(primary);
+        this.writePositionQuery = config.getWritePositionQuery();
+        this.cookieName = config.getPositionCookie();
+    }
+
+    // Gives the client of the current request the primary's position, now that its write has committed.
+    // Runs on a connection of its own: the one of the transaction may still be bound while it completes
+    public void recordWrite() {
+        HttpServletRequest request = currentRequest();
+        if (request == null) {
+            return;
+        }
+        Long position;
+        try {
+            position = primary.queryForObject(writePositionQuery, Long.class);
+        } catch (DataAccessException e) {
+            log.warn("Could not read the write position of the primary, the next reads of this client may be stale: {}", e.getMessage());
+            return;
+        }
+        if (position == null) {
+            return;
+        }
+        request.setAttribute(POSITION_ATTRIBUTE, position);
+        HttpServletResponse response = ((ServletRequestAttributes) RequestContextHolder.currentRequestAttributes()).getResponse();
+        if (response != null && !response.isCommitted()) {
+            Cookie cookie = new Cookie(cookieName, position.toString());
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            response.addCookie(cookie);
+        }
+    }
+
+    // Position the current client must see, null = no write of this client known (any replica within max-lag will do)
+    public Long requiredPosition() {
+        HttpServletRequest request = currentRequest();
+        if (request == null) {
+            return null;
+        }
+        Object written = request.getAttribute(POSITION_ATTRIBUTE);
+        if (written != null) {
+            return (Long) written;
+        }
+        Cookie cookie = WebUtils.getCookie(request, cookieName);
+        if (cookie == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(cookie.getValue());
+        } catch (NumberFormatException e) {
+            return null; // not ours, or tampered with: no guarantee to keep
+        }
+    }
+
+    private static HttpServletRequest currentRequest() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes instanceof ServletRequestAttributes ? ((ServletRequestAttributes) attributes).getRequest() : null;
+    }
+}
@@ -0,0 +1,92 @@
+package net.projectsync.karatedemo.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Routes the connections of read-only transactions to a read replica, everything else to the primary.
+ *
+ * A replica is used only if
+ * - its last lag check succeeded and its lag is at most 'maxLag'
+ * - it has replayed the last write of the requesting client, if that client has written (ReadYourWrites).
+ *   A replica at lag 0 has not necessarily replayed a commit of the last milliseconds: the replayed WAL position
+ *   is compared instead, so a client reading its own write gets it from the primary until a replica has caught up
+ * Replicas are taken round robin, the primary is the fallback.
+ * Code wrapped in onPrimary() always reads from the primary (the loader of the product cache, whose entries live for the TTL).
+ *
+ * Must be wrapped in a LazyConnectionDataSourceProxy: the transaction manager opens the connection
+ * before the transaction is marked read-only, the proxy defers the routing decision to the first statement.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+
+    private static final ThreadLocal<Boolean> PRIMARY_ONLY = new ThreadLocal<>();
+
+    private final ReadReplicas replicas;
+    private final long maxLagMillis;
+    private final ReadYourWrites readYourWrites;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, ReadReplicas replicas, Duration maxLag, ReadYourWrites readYourWrites) {
+        this.replicas = replicas;
+        this.maxLagMillis = maxLag.toMillis();
+        this.readYourWrites = readYourWrites;
+    // Runs 'action' with every connection it opens routed to the primary, also in read-only transactions.
+    // The routing is decided on the first statement (LazyConnectionDataSourceProxy), so the transaction may start inside 'action'
+    public static <T> T onPrimary(Supplier<T> action) {
+        Boolean outer = PRIMARY_ONLY.get();
+        PRIMARY_ONLY.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            if (outer == null) {
+                PRIMARY_ONLY.remove();
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            recordWriteOnCommit();
+            return PRIMARY;
+        }
+        if (PRIMARY_ONLY.get() != null) {
+            return PRIMARY;
+        }
+        Long required = readYourWrites.requiredPosition();
+        int count = replicas.size();
+        int start = Math.floorMod(nextReplica.getAndIncrement(), Math.max(count, 1));
+        for (int i = 0; i < count; i++) {
+            int index = (start + i) % count;
+            Duration lag = replicas.lag(index);
+            if (lag == null || lag.toMillis() > maxLagMillis) {
+                continue;
+            }
+            Long replayed = replicas.replayPosition(index);
+            if (required == null || replayed != null && replayed >= required) {
+                return index;
+            }
+        }
+        return PRIMARY;
+    }
+
+    private void recordWriteOnCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    readYourWrites.recordWrite();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package net.projectsync.karatedemo.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Logback turbo filter that samples the level checks (isDebugEnabled() etc.) of one logger and its children:
+ * one in 'sampleEvery' statements answers 'enabled'. Callers that guard their log statement with the check
+ * (Hibernate's SQL logger does) skip message formatting and event creation for the other calls.
+ * The log call that follows a positive check is let through, unguarded calls are not sampled.
+ * Sampled once per statement: Hibernate logs through JBoss Logging, which checks the level a second time before
+ * it forwards the event. A check right after a positive one on the same thread is let through without sampling.
+ * Configured in logback-spring.xml (profile 'perf') for org.hibernate.SQL
+ */
+public class SamplingTurboFilter extends TurboFilter {
+
+    // Set by a positive check, cleared by the next check or log call of the thread
+    private static final ThreadLocal<Boolean> SAMPLED = new ThreadLocal<>();
+
+    private String loggerName;
+    private int sampleEvery = 100;
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (loggerName == null || !logger.getName().startsWith(loggerName)) {
+            return FilterReply.NEUTRAL;
+        }
+        // format == null: a level check, not a log call
+        if (format != null || SAMPLED.get() != null) {
+            SAMPLED.remove();
+            return FilterReply.NEUTRAL;
+        }
+        if (ThreadLocalRandom.current().nextInt(sampleEvery) != 0) {
+            return FilterReply.DENY;
+        }
+        SAMPLED.set(Boolean.TRUE);
+        return FilterReply.NEUTRAL;
+    }
+
+    public void setLoggerName(String loggerName) {
+        this.loggerName = loggerName;
+    }
+
+    public void setSampleEvery(int sampleEvery) {
+        this.sampleEvery = Math.max(1, sampleEvery);
+    }
+}
@@ -0,0 +1,100 @@
+package net.projectsync.karatedemo.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import java.util.List;
+
+/**
+ * Creates the indexes behind GET /api/v1/bankproducts/search, after Hibernate has created the table.
+ * JPA @Index can not express function or GIN indexes, so they are created here ('if not exists', safe on every start).
+ * They serve the title match, not the id order of the pages: see BankProductRepository.searchByTitle()
+ *
+ * PostgreSQL: built CONCURRENTLY, so writes to bank_product go on while an index is built on a large table.
+ * CONCURRENTLY can not run inside a transaction: the statements run on an auto-commit connection, outside of @Transactional.
+ * - lower(title) text_pattern_ops  -> btree for prefix matches (lower(title) LIKE 'abc%'), independent of the collation
+ * - lower(title) gin_trgm_ops      -> trigram GIN for substring matches (LIKE '%abc%'), needs the pg_trgm extension
+ * A failed concurrent build leaves an INVALID index that 'if not exists' would skip forever: it is dropped and built again.
+ *
+ * H2 (tests): no function indexes. A generated column title_lower = lower(title) is indexed instead,
+ * and searches use it once it exists (see usesTitleLowerColumn(), BankProductRepository.searchByTitleLower)
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "bankproducts.search.create-indexes", havingValue = "true", matchIfMissing = true)
+public class SearchIndexInitializer implements ApplicationRunner {
+
+    private static final List<String> POSTGRES_INDEXES = List.of("bank_product_title_prefix_idx", "bank_product_title_trgm_idx");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String schemaPrefix;
+    private final String table;
+
+    // Set once the H2 column and its index exist; until then searches use lower(title)
+    private volatile boolean titleLowerColumn;
+
+    public SearchIndexInitializer(JdbcTemplate jdbcTemplate,
+                                  @Value("${spring.jpa.properties.hibernate.default_schema:}") String schema) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.schemaPrefix = schema.isBlank() ? "" : schema + ".";
+        this.table = schemaPrefix + "bank_product";
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+        if ("PostgreSQL".equals(database)) {
+            dropInvalidIndexes();
+            execute(List.of(
+                    "create extension if not exists pg_trgm",
+                    "create index concurrently if not exists bank_product_title_prefix_idx on " + table + " (lower(title) text_pattern_ops)",
+                    "create index concurrently if not exists bank_product_title_trgm_idx on " + table + " using gin (lower(title) gin_trgm_ops)"));
+        } else if ("H2".equals(database)) {
+            titleLowerColumn = execute(List.of(
+                    "alter table " + table + " add column if not exists title_lower varchar(255) generated always as (lower(title))",
+                    "create index if not exists bank_product_title_lower_idx on " + table + " (title_lower)"));
+        }
+    }
+
+    // True when title searches can use the indexed title_lower column (H2) instead of lower(title)
+    public boolean usesTitleLowerColumn() {
+        return titleLowerColumn;
+    }
+
+    // Leftovers of an interrupted or failed 'create index concurrently'
+    private void dropInvalidIndexes() {
+        try {
+            List<String> invalid = jdbcTemplate.queryForList(
+                    "select c.relname from pg_index i join pg_class c on c.oid = i.indexrelid "
+                            + "where not i.indisvalid and c.relname in (?, ?)",
+                    String.class, POSTGRES_INDEXES.get(0), POSTGRES_INDEXES.get(1));
+            for (String index : invalid) {
+                log.warn("Dropping invalid search index {}, it is built again", index);
+                execute(List.of("drop index concurrently if exists " + schemaPrefix + index));
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not check the search indexes for invalid ones: {}", e.getMessage());
+        }
+    }
+
+    // A missing index makes search slow, not wrong: log it and keep starting (e.g. no privilege for 'create extension')
+    // Returns true if every statement succeeded
+    private boolean execute(List<String> statements) {
+        boolean succeeded = true;
+        for (String sql : statements) {
+            try {
+                jdbcTemplate.execute(sql);
+            } catch (DataAccessException e) {
+                log.warn("Search index statement failed, title search falls back to a table scan: {} ({})", sql, e.getMessage());
+                succeeded = false;
+            }
+        }
+        return succeeded;
+    }
+}
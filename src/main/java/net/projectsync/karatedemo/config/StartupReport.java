@@ -0,0 +1,83 @@
+package net.projectsync.karatedemo.config;
+
+import lombok.extern.slf4j.Slf4j;
+import net.projectsync.karatedemo.service.BankProductService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Logs how long the startup took and the resident memory (RSS) of the JVM once the app is ready.
+ * - readyMs       -> SpringApplication.run until ready
+ * - jvmUptimeMs   -> JVM start until ready (includes class loading before main, what CDS speeds up)
+ * - firstQueryMs  -> first product query, with lazy initialization this is where JPA is bootstrapped
+ * - rssKb         -> VmRSS from /proc/self/status, -1 on other systems
+ * Used by 'gradle startupBenchmark' (bankproducts.startup.*)
+ */
+@Slf4j
+@Component
+public class StartupReport implements ApplicationListener<ApplicationReadyEvent> {
+
+    private final BankProductProperties.Startup startup;
+    // Resolved on use: with lazy initialization the listener must not pull in JPA during the startup
+    private final ObjectProvider<BankProductService> service;
+
+    public StartupReport(BankProductProperties properties, ObjectProvider<BankProductService> service) {
+        this.startup = properties.getStartup();
+        this.service = service;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        long readyMs = event.getTimeTaken() != null ? event.getTimeTaken().toMillis() : -1;
+        long jvmUptimeMs = ManagementFactory.getRuntimeMXBean().getUptime();
+        log.info("Ready in {} ms (JVM uptime {} ms), RSS {} kB", readyMs, jvmUptimeMs, residentSetKb());
+
+        if (startup.getReportFile() != null) {
+            long start = System.nanoTime();
+            service.getObject().getProductsPage(null, 1);
+            long firstQueryMs = (System.nanoTime() - start) / 1_000_000;
+            append(String.join(",", startup.getLabel(), String.valueOf(readyMs), String.valueOf(jvmUptimeMs),
+                    String.valueOf(firstQueryMs), String.valueOf(residentSetKb())));
+        }
+        if (startup.isExitAfterReady()) {
+            ConfigurableApplicationContext context = event.getApplicationContext();
+            System.exit(SpringApplication.exit(context));
+        }
+    }
+
+    private void append(String line) {
+        try {
+            Files.write(Paths.get(startup.getReportFile()), (line + System.lineSeparator()).getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            log.warn("Could not write the startup report to {}: {}", startup.getReportFile(), e.getMessage());
+        }
+    }
+
+    static long residentSetKb() {
+        Path status = Paths.get("/proc/self/status");
+        if (!Files.isReadable(status)) {
+            return -1;
+        }
+        try {
+            return Files.readAllLines(status).stream()
+                    .filter(line -> line.startsWith("VmRSS:"))
+                    .map(line -> Long.parseLong(line.replaceAll("\\D", "")))
+                    .findFirst()
+                    .orElse(-1L);
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+    }
+}
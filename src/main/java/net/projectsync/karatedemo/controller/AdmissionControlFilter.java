@@ -0,0 +1,181 @@
+package net.projectsync.karatedemo.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Bounds the number of requests processed at the same time (back-pressure in front of the connection pool).
+ * - a request waits at most 'queueTimeout' for a permit, waiting requests are admitted in arrival order (fair semaphore)
+ * - past that it gets 429 Too Many Requests with Retry-After, instead of queueing without bound on a pool connection
+ * - async requests (NDJSON export) keep their permit until the async processing has completed
+ * - requests matching 'exempt' (long-polls, which mostly wait) are not counted
+ * - with an AimdLimit the number of permits follows the latency of the synchronous requests (async ones are not sampled)
+ *   matching 'sampled': requests that are slow by design (bulk work, waits) would shrink the limit without any overload
+ */
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private final AdjustableSemaphore permits;
+    private final long queueTimeoutNanos;
+    private final String retryAfterSeconds;
+    private final AimdLimit adaptiveLimit;  // null = fixed limit
+    private final AtomicInteger limit;      // permits currently granted by the semaphore
+    private final LongAdder rejected = new LongAdder();
+    private Predicate<HttpServletRequest> exempt = request -> false;
+    private Predicate<HttpServletRequest> sampled = request -> true;
+
+    public AdmissionControlFilter(int maxConcurrentRequests, Duration queueTimeout, Duration retryAfter) {
+        this(maxConcurrentRequests, null, queueTimeout, retryAfter);
+    }
+
+    public AdmissionControlFilter(AimdLimit adaptiveLimit, Duration queueTimeout, Duration retryAfter) {
+        this(adaptiveLimit.getLimit(), adaptiveLimit, queueTimeout, retryAfter);
+    }
+
+    private AdmissionControlFilter(int limit, AimdLimit adaptiveLimit, Duration queueTimeout, Duration retryAfter) {
+        this.permits = new AdjustableSemaphore(limit);
+        this.queueTimeoutNanos = queueTimeout.toNanos();
+        this.retryAfterSeconds = String.valueOf(Math.max(1, retryAfter.toSeconds()));
+        this.adaptiveLimit = adaptiveLimit;
+        this.limit = new AtomicInteger(limit);
+    }
+
+    public void setExempt(Predicate<HttpServletRequest> exempt) {
+        this.exempt = exempt;
+    }
+
+    // Requests whose latency drives the adaptive limit, all by default
+    public void setSampled(Predicate<HttpServletRequest> sampled) {
+        this.sampled = sampled;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return exempt.test(request);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!acquire()) {
+            rejected.increment();
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+            response.sendError(HttpStatus.TOO_MANY_REQUESTS.value());
+            return;
+        }
+        Release release = new Release();
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(release); // released when the async processing ends
+            } else {
+                if (sampled.test(request)) {
+                    adapt(System.nanoTime() - start);
+                }
+                release.run();
+            }
+        }
+    }
+
+    // Current limit, published as bankproducts.admission.limit
+    public int limit() {
+        return limit.get();
+    }
+
+    // Requests rejected so far, published as bankproducts.requests.rejected{reason=concurrency}
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    // Permits currently free, for tests and diagnostics
+    int availablePermits() {
+        return permits.availablePermits();
+    }
+
+    // Grants or withdraws the permits by which the adaptive limit has moved.
+    // getAndSet() hands every caller the exact previous value, so concurrent adjustments add up to the final limit
+    private void adapt(long latencyNanos) {
+        if (adaptiveLimit == null) {
+            return;
+        }
+        int inFlight = limit.get() - permits.availablePermits();
+        int target = adaptiveLimit.onSample(latencyNanos, inFlight);
+        int previous = limit.getAndSet(target);
+        if (target > previous) {
+            permits.release(target - previous);
+        } else if (target < previous) {
+            permits.reducePermits(previous - target); // requests holding a permit finish, fewer are admitted after them
+        }
+    }
+
+    private boolean acquire() {
+        try {
+            return permits.tryAcquire(queueTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // Fair semaphore whose number of permits can also shrink (reducePermits() is protected in Semaphore)
+    private static class AdjustableSemaphore extends Semaphore {
+
+        AdjustableSemaphore(int permits) {
+            super(permits, true);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+
+    // Returns the permit exactly once, whichever of complete/error/timeout fires
+    private class Release implements AsyncListener {
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        void run() {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            run();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            run();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            run();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // a re-started async cycle keeps the permit
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
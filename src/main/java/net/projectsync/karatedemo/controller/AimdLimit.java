@@ -0,0 +1,43 @@
+package net.projectsync.karatedemo.controller;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrency limit that follows the latency of the admitted requests (additive increase, multiplicative decrease).
+ * The admitted requests spend their time on JDBC calls and waiting for a pool connection, so a slow request means
+ * the database (or the pool) is saturated and more concurrent requests would only queue on it.
+ * - request slower than 'latencyThreshold'                 -> limit * 'backoffRatio'
+ * - faster request while at least half the limit is in use -> limit + 1
+ * - the limit stays within [min, max]
+ */
+public class AimdLimit {
+
+    private final int min;
+    private final int max;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+    private final AtomicInteger limit;
+
+    public AimdLimit(int min, int max, Duration latencyThreshold, double backoffRatio) {
+        this.min = Math.max(1, min);
+        this.max = Math.max(this.min, max);
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.backoffRatio = backoffRatio;
+        this.limit = new AtomicInteger(this.max);
+    }
+
+    public int getLimit() {
+        return limit.get();
+    }
+
+    // Latency of one request that held a permit, returns the new limit
+    public int onSample(long latencyNanos, int inFlight) {
+        return limit.updateAndGet(current -> {
+            if (latencyNanos > latencyThresholdNanos) {
+                return Math.max(min, (int) (current * backoffRatio));
+            }
+            return inFlight * 2 >= current ? Math.min(max, current + 1) : current;
+        });
+    }
+}
@@ -0,0 +1,54 @@
+package net.projectsync.karatedemo.controller;
+
+import lombok.RequiredArgsConstructor;
+import net.projectsync.karatedemo.model.ChangeFeedPage;
+import net.projectsync.karatedemo.service.BankProductChangeFeed;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import java.time.Duration;
+
+/**
+ * Change feed of the products, for consumers that would otherwise poll the whole catalog.
+ * Start with since=0 (or the last seq processed) and pass nextSince of every page as the next 'since'
+ */
+@RestController
+@RequestMapping("/api/v1/bankproducts/changes")
+@RequiredArgsConstructor
+public class BankProductChangeController {
+
+    private final BankProductChangeFeed changeFeed;
+
+    // CHANGES: /api/v1/bankproducts/changes?since={seq}&limit={n}
+    @GetMapping(params = "!wait")
+    public ResponseEntity<ChangeFeedPage> getChanges(@RequestParam(defaultValue = "0") long since,
+                                                     @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(changeFeed.getChanges(since, limit));
+    }
+
+    // CHANGES (long-poll): /api/v1/bankproducts/changes?since={seq}&limit={n}&wait={seconds}
+    // Answers as soon as there are changes after 'since', with an empty page after 'wait' (at most bankproducts.changes.max-wait).
+    // Holds no thread while waiting and is not counted by the admission control (ExecutionConfig)
+    @GetMapping(params = "wait")
+    public DeferredResult<ChangeFeedPage> awaitChanges(@RequestParam(defaultValue = "0") long since,
+                                                       @RequestParam(defaultValue = "100") int limit,
+                                                       @RequestParam long wait) {
+        ChangeFeedPage current = changeFeed.getChanges(since, limit);
+        Duration timeout = changeFeed.waitFor(Duration.ofSeconds(Math.max(wait, 0)));
+        DeferredResult<ChangeFeedPage> result = new DeferredResult<>(timeout.toMillis(), current);
+        if (!current.getItems().isEmpty() || timeout.isZero()) {
+            result.setResult(current);
+            return result;
+        }
+        Runnable cancel = changeFeed.await(since, limit, result::setResult);
+        if (cancel == null) {
+            result.setResult(current); // too many waiting already
+        } else {
+            result.onCompletion(cancel);
+        }
+        return result;
+    }
+}
@@ -1,13 +1,37 @@
 package net.projectsync.karatedemo.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import net.projectsync.karatedemo.config.ReadYourWrites;
 import net.projectsync.karatedemo.model.BankProduct;
+import net.projectsync.karatedemo.model.BankProductSummary;
+import net.projectsync.karatedemo.model.BankProductView;
+import net.projectsync.karatedemo.model.BulkLookupResult;
+import net.projectsync.karatedemo.model.BatchCreateResult;
+import net.projectsync.karatedemo.model.CursorPage;
+import net.projectsync.karatedemo.service.BankProductBatchService;
 import net.projectsync.karatedemo.service.BankProductService;
+import net.projectsync.karatedemo.service.BankProductWriteBehindQueue;
+import net.projectsync.karatedemo.service.IdempotencyService;
+import net.projectsync.karatedemo.service.WriteBehindRejectedException;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/v1/bankproducts")
@@ -15,38 +39,131 @@ import java.util.List;
 public class BankProductController {
 
     private final BankProductService bankProductService;
+    private final BankProductBatchService bankProductBatchService;
+    private final ObjectMapper objectMapper;
+    private final IdempotencyService idempotencyService;
+    // Only with bankproducts.ingest.mode=write-behind
+    private final ObjectProvider<BankProductWriteBehindQueue> writeBehindQueue;
+    // Only with bankproducts.read-replica.enabled=true
+    private final ObjectProvider<ReadYourWrites> readYourWrites;
 
     // CREATE
+    // With write-behind the product is written by the queue's writer thread in a batch, this request only waits for it
+    // (429 when the queue is full, see WriteBehindExceptionHandler)
+    // With 'Idempotency-Key: <client generated key>' a retried create returns the first response instead of another product
     @PostMapping
-    public ResponseEntity<BankProduct> createProduct(@Valid @RequestBody BankProduct product) {
-        BankProduct created = bankProductService.createProduct(product);
-        return ResponseEntity
-                .created(URI.create("/api/v1/bankproducts/" + created.getId())) // Location header
-                .body(created);
+    public ResponseEntity<BankProduct> createProduct(@Valid @RequestBody BankProduct product,
+                                                     @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return create(product);
+        }
+        return idempotencyService.execute(idempotencyKey, "POST /api/v1/bankproducts", product, BankProduct.class,
+                () -> create(product));
+    }
+
+    // CREATE (bulk): JSON array or NDJSON body
+    // The body is parsed item by item, so the whole request is never held in memory as a List
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<BatchCreateResult> createProducts(InputStream body) throws IOException {
+        // A top-level JSON array is iterated element by element, NDJSON value by value
+        try (MappingIterator<BankProduct> products = objectMapper.readerFor(BankProduct.class).readValues(body)) {
+            return ResponseEntity.ok(bankProductBatchService.createProducts(products));
+        } catch (JsonProcessingException e) {
+            // Body is not JSON at all (first token already invalid)
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     // READ (by ID)
+    // If-None-Match is checked against the version alone, so a 304 neither loads nor serializes the product
     @GetMapping("/{id}")
-    public ResponseEntity<BankProduct> getProductById(@PathVariable Long id) {
+    public ResponseEntity<BankProductView> getProductById(@PathVariable Long id, WebRequest request) {
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            Optional<Long> version = bankProductService.getProductVersion(id);
+            if (version.isPresent() && request.checkNotModified(ProductETags.of(version.get()))) {
+                return null; // 304 Not Modified, ETag header already set by checkNotModified()
+            }
+        }
         return bankProductService.getProductById(id)
-                .map(ResponseEntity::ok)
+                .map(product -> withETag(ResponseEntity.ok(), product.getVersion(), product))
                 .orElse(ResponseEntity.notFound().build());
     }
 
     // READ (all products)
+    // If-None-Match is checked against one aggregate query before any product is loaded.
+    // ETag and list come from the same read-only transaction, see BankProductService.readCatalog()
     @GetMapping
-    public ResponseEntity<List<BankProduct>> getAllProducts() {
-        List<BankProduct> products = bankProductService.getAllProducts();
-        return ResponseEntity.ok(products);
+    public ResponseEntity<List<BankProductView>> getAllProducts(WebRequest request) {
+        return bankProductService.readCatalog((version, products) -> {
+            String eTag = ProductETags.of(version);
+            if (request.checkNotModified(eTag)) {
+                return null; // 304 Not Modified
+            }
+            return ResponseEntity.ok().eTag(eTag).body(products.get());
+        });
+    }
+
+    // READ (cursor page): /api/v1/bankproducts?after={lastSeenId}&limit={n}
+    // Selected over getAllProducts() whenever 'limit' is present, except with 'ids' (see getProductsByIds()).
+    // Pass nextCursor of a page as 'after' to get the next one
+    @GetMapping(params = {"limit", "!ids"})
+    public ResponseEntity<CursorPage<BankProductView>> getProductsPage(@RequestParam(required = false) Long after,
+                                                                       @RequestParam int limit) {
+        return ResponseEntity.ok(bankProductService.getProductsPage(after, limit));
+    }
+
+    // READ (by IDs): /api/v1/bankproducts?ids=1,2,3
+    // Products in the requested order plus the ids that were not found. 400 for more ids than bankproducts.lookup.max-ids
+    // Also with 'limit' (?ids=1,2&limit=10): the ids select the products, 'limit' is ignored
+    @GetMapping(params = "ids")
+    public ResponseEntity<BulkLookupResult> getProductsByIds(@RequestParam List<Long> ids) {
+        return lookup(ids);
+    }
+
+    // READ (by IDs), for id sets too long for a URL: POST /api/v1/bankproducts/lookup with body [1,2,3]
+    @PostMapping("/lookup")
+    public ResponseEntity<BulkLookupResult> lookupProducts(@RequestBody List<Long> ids) {
+        return lookup(ids);
+    }
+
+    // SEARCH (by title, case-insensitive): /api/v1/bankproducts/search?q={term}&match=prefix|substring&after={lastSeenId}&limit={n}
+    // Returns id + title only, paginated like getProductsPage(). 400 for a blank term or an unknown match mode
+    @GetMapping("/search")
+    public ResponseEntity<CursorPage<BankProductSummary>> searchProducts(@RequestParam String q,
+                                                                         @RequestParam(defaultValue = "prefix") String match,
+                                                                         @RequestParam(required = false) Long after,
+                                                                         @RequestParam(defaultValue = "20") int limit) {
+        try {
+            BankProductService.SearchMatch searchMatch = BankProductService.SearchMatch.valueOf(match.trim().toUpperCase(Locale.ROOT));
+            return ResponseEntity.ok(bankProductService.searchProducts(q, searchMatch, after, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // EXPORT (all products as NDJSON)
+    // The body is written on an MVC async thread while the rows are streamed from the database
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportProducts() {
+        StreamingResponseBody body = bankProductService::exportProducts;
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     // UPDATE
+    // With 'If-Match: "<version>"' the update is applied only if the product is still at that version (else 412)
+    // With 'Idempotency-Key' a retried update returns the first response (a retry after a successful If-Match update gets 200, not 412)
     @PutMapping("/{id}")
     public ResponseEntity<BankProduct> updateProduct(@PathVariable Long id,
-                                                     @Valid @RequestBody BankProduct product) {
-        return bankProductService.updateProduct(id, product)
-                .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+                                                     @Valid @RequestBody BankProduct product,
+                                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                     @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return update(id, product, ifMatch);
+        }
+        return idempotencyService.execute(idempotencyKey, "PUT /api/v1/bankproducts/" + id + " If-Match: " + ifMatch,
+                product, BankProduct.class, () -> update(id, product, ifMatch));
     }
 
     // DELETE (by ID)
@@ -57,4 +174,60 @@ public class BankProductController {
                 ? ResponseEntity.noContent().build()
                 : ResponseEntity.notFound().build();
     }
+
+    private ResponseEntity<BankProduct> create(BankProduct product) {
+        BankProductWriteBehindQueue queue = writeBehindQueue.getIfAvailable();
+        if (queue == null) {
+            return created(bankProductService.createProduct(product));
+        }
+        try {
+            BankProduct created = queue.create(product);
+            // Committed by the writer thread, which has no client to tell: the position goes to this one
+            readYourWrites.ifAvailable(ReadYourWrites::recordWrite);
+            return created(created);
+        } catch (WriteBehindRejectedException e) {
+            // Timed out but still queued: an Idempotency-Key stays reserved and gets this response once it is written
+            throw e.respondWhenWritten(BankProductController::created);
+        }
+    }
+
+    private static ResponseEntity<BankProduct> created(BankProduct created) {
+        return withETag(ResponseEntity
+                .created(URI.create("/api/v1/bankproducts/" + created.getId())), created.getVersion(), created); // Location header
+    }
+
+    private ResponseEntity<BankProduct> update(Long id, BankProduct product, String ifMatch) {
+        if (ifMatch == null || "*".equals(ifMatch.trim())) {
+            return bankProductService.updateProduct(id, product)
+                    .map(updated -> withETag(ResponseEntity.ok(), updated.getVersion(), updated))
+                    .orElse(ResponseEntity.notFound().build());
+        }
+        Long expectedVersion = ProductETags.parseVersion(ifMatch);
+        if (expectedVersion == null) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        }
+        try {
+            BankProduct updated = bankProductService.updateProduct(id, product, expectedVersion);
+            return withETag(ResponseEntity.ok(), updated.getVersion(), updated);
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        }
+    }
+
+    private ResponseEntity<BulkLookupResult> lookup(List<Long> ids) {
+        try {
+            return ResponseEntity.ok(bankProductService.getProductsByIds(ids));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Adds the strong ETag of the product, when it has a version
+    private static <T> ResponseEntity<T> withETag(ResponseEntity.BodyBuilder builder, Long version, T product) {
+        String eTag = ProductETags.of(version);
+        if (eTag != null) {
+            builder.eTag(eTag);
+        }
+        return builder.body(product);
+    }
 }
@@ -0,0 +1,33 @@
+package net.projectsync.karatedemo.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import java.util.List;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/api/v1/bankproducts/stream")
+@RequiredArgsConstructor
+public class BankProductStreamController {
+
+    private final BankProductUpdateBroadcaster broadcaster;
+
+    // STREAM (Server-Sent Events): /api/v1/bankproducts/stream?ids=1,2 for some products, without 'ids' for all
+    // Events 'created', 'updated', 'deleted' with the change as JSON. Its 'seq' is the 'since' of /changes,
+    // to catch up after a reconnect. 503 when this node has bankproducts.stream.max-subscribers already
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribe(@RequestParam(required = false) List<Long> ids) {
+        SseEmitter emitter = broadcaster.subscribe(ids == null ? Set.of() : Set.copyOf(ids));
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+}
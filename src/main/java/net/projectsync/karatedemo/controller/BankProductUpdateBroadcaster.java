@@ -0,0 +1,348 @@
+package net.projectsync.karatedemo.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import net.projectsync.karatedemo.config.BankProductProperties;
+import net.projectsync.karatedemo.model.BankProductChange;
+import net.projectsync.karatedemo.service.BankProductChangeFeed;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Pushes product updates to Server-Sent Events subscribers (GET /api/v1/bankproducts/stream), see bankproducts.stream.*
+ *
+ * Source: the change feed, followed with one long-poll for all subscribers. It is woken by the commits of this node
+ * and sees the changes of all nodes, in seq order.
+ * Fan-out: each update is serialized once and offered to the bounded buffer of every matching subscriber, which never
+ * blocks. A few sender threads write the buffers to the connections. A subscriber whose buffer is full is
+ * disconnected (slow consumer) and catches up through /changes after reconnecting.
+ * Only a subscriber's own sender touches its emitter: a disconnected subscriber is marked and completed by its sender,
+ * so the publishing thread never waits on the emitter lock that a sender stuck in a write holds.
+ * Writes to a connection are blocking servlet writes: one taking longer than 'send-timeout' disconnects the subscriber,
+ * and the sender pool gets an extra thread until that write returns, so stalled peers do not starve the others.
+ * Idle subscribers hold a connection only, no thread.
+ */
+@Slf4j
+@Component
+public class BankProductUpdateBroadcaster {
+
+    private static final Message HEARTBEAT = new Message(null, null);
+
+    // Subscriber.writeStarted when no write is in progress, or when the write in progress has exceeded 'send-timeout'
+    private static final long IDLE = 0;
+    private static final long STALLED = Long.MIN_VALUE;
+
+    private final BankProductChangeFeed changeFeed;
+    private final ObjectMapper objectMapper;
+    private final BankProductProperties.Stream config;
+    private final Executor senders;
+    private final ScheduledExecutorService scheduler;
+    private final long sendTimeoutNanos;
+
+    private final Set<Subscriber> allSubscribers = ConcurrentHashMap.newKeySet();
+    private final Set<Subscriber> catalogSubscribers = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<Long, Set<Subscriber>> productSubscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final AtomicBoolean following = new AtomicBoolean();
+
+    public BankProductUpdateBroadcaster(BankProductChangeFeed changeFeed, ObjectMapper objectMapper, BankProductProperties properties) {
+        this(changeFeed, objectMapper, properties.getStream(), new ThreadPoolExecutor(
+                properties.getStream().getSenderThreads(), properties.getStream().getSenderThreads(), 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), daemon("bankproducts-sse-sender")));
+        long heartbeat = config.getHeartbeat().toMillis();
+        scheduler.scheduleWithFixedDelay(this::heartbeat, heartbeat, heartbeat, TimeUnit.MILLISECONDS);
+        long writeCheck = Math.max(config.getSendTimeout().toMillis() / 2, 100);
+        scheduler.scheduleWithFixedDelay(this::checkWrites, writeCheck, writeCheck, TimeUnit.MILLISECONDS);
+    }
+
+    // With the given sender executor, without heartbeats and write checks, for tests
+    BankProductUpdateBroadcaster(BankProductChangeFeed changeFeed, ObjectMapper objectMapper,
+                                 BankProductProperties.Stream config, Executor senders) {
+        this.changeFeed = changeFeed;
+        this.objectMapper = objectMapper;
+        this.config = config;
+        this.senders = senders;
+        this.sendTimeoutNanos = config.getSendTimeout().toNanos();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(daemon("bankproducts-sse"));
+    }
+
+    // Subscribes to the updates of the given products, of all products when 'ids' is empty
+    // Returns null when 'max-subscribers' are connected already
+    public SseEmitter subscribe(Set<Long> ids) {
+        return subscribe(ids, () -> new SseEmitter(config.getTimeout().toMillis()));
+    }
+
+    SseEmitter subscribe(Set<Long> ids, Supplier<SseEmitter> emitters) {
+        if (subscriberCount.incrementAndGet() > config.getMaxSubscribers()) {
+            subscriberCount.decrementAndGet();
+            return null;
+        }
+        SseEmitter emitter = emitters.get();
+        Subscriber subscriber = new Subscriber(emitter, ids, config.getBufferSize());
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+        allSubscribers.add(subscriber);
+        if (ids.isEmpty()) {
+            catalogSubscribers.add(subscriber);
+        } else {
+            ids.forEach(id -> productSubscribers.computeIfAbsent(id, k -> ConcurrentHashMap.newKeySet()).add(subscriber));
+        }
+        follow();
+        return emitter;
+    }
+
+    // Subscribers connected, for tests and diagnostics
+    int subscribers() {
+        return subscriberCount.get();
+    }
+
+    // Disconnects the subscribers whose current write takes longer than 'send-timeout' (also called by the scheduler).
+    // The write itself can not be interrupted: the sender pool grows by one thread until it returns
+    void checkWrites() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : allSubscribers) {
+            long started = subscriber.writeStarted.get();
+            if (started != IDLE && started != STALLED && now - started > sendTimeoutNanos
+                    && subscriber.writeStarted.compareAndSet(started, STALLED)) {
+                log.debug("Disconnecting SSE subscriber, a write has been blocked for more than {}", config.getSendTimeout());
+                resizeSenders(1);
+                drop(subscriber);
+            }
+        }
+    }
+
+    // Offers every change to the buffers of its subscribers, never blocks
+    void publish(List<BankProductChange> changes) {
+        for (BankProductChange change : changes) {
+            Set<Subscriber> forProduct = productSubscribers.get(change.getProductId());
+            if (catalogSubscribers.isEmpty() && forProduct == null) {
+                continue;
+            }
+            Message message = message(change);
+            catalogSubscribers.forEach(subscriber -> offer(subscriber, message));
+            if (forProduct != null) {
+                forProduct.forEach(subscriber -> offer(subscriber, message));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        scheduler.shutdownNow();
+        if (senders instanceof ExecutorService) {
+            ((ExecutorService) senders).shutdownNow();
+        }
+    }
+
+    // Follows the change feed from the newest change on, once the first subscriber is there
+    private void follow() {
+        if (following.compareAndSet(false, true)) {
+            scheduler.execute(() -> start(1));
+        }
+    }
+
+    // The newest seq needs the database: retried with backoff (1s, 2s, 4s, .. 30s) until it is available
+    private void start(long retrySeconds) {
+        long since;
+        try {
+            since = changeFeed.latestSeq();
+        } catch (RuntimeException e) {
+            log.warn("Cannot follow the change feed, retrying in {}s: {}", retrySeconds, e.getMessage());
+            scheduler.schedule(() -> start(Math.min(retrySeconds * 2, 30)), retrySeconds, TimeUnit.SECONDS);
+            return;
+        }
+        await(since);
+    }
+
+    private void await(long since) {
+        Runnable cancel = null;
+        try {
+            cancel = changeFeed.await(since, 1000, page -> {
+                try {
+                    publish(page.getItems());
+                } catch (RuntimeException e) {
+                    log.warn("Publishing changes up to seq {} failed: {}", page.getNextSince(), e.getMessage());
+                } finally {
+                    // Always re-armed, else the subscribers would get heartbeats only. Not from within the callback
+                    // of the change feed thread
+                    scheduler.execute(() -> await(page.getNextSince()));
+                }
+            });
+        } catch (RuntimeException e) {
+            log.warn("Waiting for changes after seq {} failed: {}", since, e.getMessage());
+        }
+        if (cancel == null) {
+            // Too many long-polls waiting (or the wait failed), try again shortly
+            scheduler.schedule(() -> await(since), 1, TimeUnit.SECONDS);
+        }
+    }
+
+    private void heartbeat() {
+        allSubscribers.forEach(subscriber -> offer(subscriber, HEARTBEAT));
+    }
+
+    private void offer(Subscriber subscriber, Message message) {
+        if (!subscriber.buffer.offer(message)) {
+            log.debug("Disconnecting slow SSE subscriber, {} updates pending", subscriber.buffer.size());
+            drop(subscriber);
+            return;
+        }
+        wakeSender(subscriber);
+    }
+
+    // Disconnects a subscriber without touching its emitter: the sender completes it, after a write in progress
+    private void drop(Subscriber subscriber) {
+        subscriber.dropped.set(true);
+        remove(subscriber);
+        wakeSender(subscriber);
+    }
+
+    private void wakeSender(Subscriber subscriber) {
+        if (subscriber.sending.compareAndSet(false, true)) {
+            senders.execute(() -> send(subscriber));
+        }
+    }
+
+    private void send(Subscriber subscriber) {
+        try {
+            Message message;
+            while (!subscriber.removed.get() && (message = subscriber.buffer.poll()) != null) {
+                write(subscriber, message);
+            }
+            if (subscriber.dropped.get() && subscriber.completed.compareAndSet(false, true)) {
+                subscriber.emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Connection closed by the client, or the emitter has completed
+            remove(subscriber);
+        } finally {
+            subscriber.sending.set(false);
+        }
+        if (subscriber.hasWork() && subscriber.sending.compareAndSet(false, true)) {
+            senders.execute(() -> send(subscriber));
+        }
+    }
+
+    private void write(Subscriber subscriber, Message message) throws IOException {
+        subscriber.writeStarted.set(System.nanoTime());
+        try {
+            subscriber.emitter.send(message.name == null
+                    ? SseEmitter.event().comment("heartbeat")
+                    : SseEmitter.event().name(message.name).data(message.data, MediaType.APPLICATION_JSON));
+        } finally {
+            if (subscriber.writeStarted.getAndSet(IDLE) == STALLED) {
+                resizeSenders(-1); // the extra thread added by checkWrites() is not needed any more
+            }
+        }
+    }
+
+    // Adds or withdraws a sender thread (only for the sender pool of the application, not the executors of tests)
+    private synchronized void resizeSenders(int delta) {
+        if (senders instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) senders;
+            int size = pool.getCorePoolSize() + delta;
+            if (delta > 0) {
+                pool.setMaximumPoolSize(size);
+                pool.setCorePoolSize(size);
+            } else {
+                pool.setCorePoolSize(size);
+                pool.setMaximumPoolSize(size);
+            }
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        if (!subscriber.removed.compareAndSet(false, true)) {
+            return;
+        }
+        subscriberCount.decrementAndGet();
+        allSubscribers.remove(subscriber);
+        if (subscriber.ids.isEmpty()) {
+            catalogSubscribers.remove(subscriber);
+        } else {
+            subscriber.ids.forEach(id -> productSubscribers.computeIfPresent(id, (k, subscribers) -> {
+                subscribers.remove(subscriber);
+                return subscribers.isEmpty() ? null : subscribers;
+            }));
+        }
+        subscriber.buffer.clear();
+    }
+
+    // Serialized once per change, shared by all subscribers
+    private Message message(BankProductChange change) {
+        try {
+            return new Message(change.getType().name().toLowerCase(Locale.ROOT), objectMapper.writeValueAsString(change));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class Message {
+
+        // Event name (created, updated, deleted), null for a heartbeat
+        private final String name;
+        private final String data;
+
+        private Message(String name, String data) {
+            this.name = name;
+            this.data = data;
+        }
+    }
+
+    private static final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final Set<Long> ids;
+        private final BlockingQueue<Message> buffer;
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private final AtomicBoolean removed = new AtomicBoolean();
+        // Disconnected by the broadcaster (slow consumer): its sender completes the emitter, once
+        private final AtomicBoolean dropped = new AtomicBoolean();
+        private final AtomicBoolean completed = new AtomicBoolean();
+        // System.nanoTime() when the current write started, IDLE or STALLED (took longer than 'send-timeout', see checkWrites())
+        private final AtomicLong writeStarted = new AtomicLong(IDLE);
+
+        private Subscriber(SseEmitter emitter, Set<Long> ids, int bufferSize) {
+            this.emitter = emitter;
+            this.ids = ids;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        // Updates to send, or an emitter to complete
+        private boolean hasWork() {
+            return !removed.get() && !buffer.isEmpty() || dropped.get() && !completed.get();
+        }
+    }
+}
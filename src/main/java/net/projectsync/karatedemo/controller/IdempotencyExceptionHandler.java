@@ -0,0 +1,40 @@
+package net.projectsync.karatedemo.controller;
+
+import net.projectsync.karatedemo.config.BankProductProperties;
+import net.projectsync.karatedemo.service.IdempotencyKeyException;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Idempotency-Key errors as HTTP status:
+ * - invalid key                         -> 400 Bad Request
+ * - key reused for a different request  -> 422 Unprocessable Entity
+ * - first request still in progress     -> 409 Conflict with Retry-After (bankproducts.idempotency.wait-timeout)
+ */
+@RestControllerAdvice
+// The application has the properties from @ConfigurationPropertiesScan, @WebMvcTest slices get them from here
+@EnableConfigurationProperties(BankProductProperties.class)
+public class IdempotencyExceptionHandler {
+
+    private final String retryAfterSeconds;
+
+    public IdempotencyExceptionHandler(BankProductProperties properties) {
+        this.retryAfterSeconds = String.valueOf(Math.max(1, properties.getIdempotency().getWaitTimeout().toSeconds()));
+    }
+
+    @ExceptionHandler(IdempotencyKeyException.class)
+    public ResponseEntity<Void> handleIdempotencyKey(IdempotencyKeyException e) {
+        switch (e.getReason()) {
+            case INVALID:
+                return ResponseEntity.badRequest().build();
+            case MISMATCH:
+                return ResponseEntity.unprocessableEntity().build();
+            default:
+                return ResponseEntity.status(HttpStatus.CONFLICT).header(HttpHeaders.RETRY_AFTER, retryAfterSeconds).build();
+        }
+    }
+}
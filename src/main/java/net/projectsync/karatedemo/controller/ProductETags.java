@@ -0,0 +1,35 @@
+package net.projectsync.karatedemo.controller;
+
+import net.projectsync.karatedemo.model.CatalogVersion;
+
+/**
+ * ETag values used by BankProductController
+ * - one product  -> strong ETag of its version, e.g. "3"
+ * - all products -> weak ETag of the catalog aggregate, e.g. W/"2-3-1"
+ */
+final class ProductETags {
+
+    private ProductETags() {
+    }
+
+    static String of(Long version) {
+        return version == null ? null : "\"" + version + "\"";
+    }
+
+    static String of(CatalogVersion catalog) {
+        return "W/\"" + catalog.getCount() + "-" + catalog.getIdSum() + "-" + catalog.getVersionSum() + "\"";
+    }
+
+    // Version of an If-Match value such as "3", null if the value is not a strong ETag of a product
+    static Long parseVersion(String ifMatch) {
+        String value = ifMatch.trim();
+        if (value.length() < 3 || !value.startsWith("\"") || !value.endsWith("\"")) {
+            return null;
+        }
+        try {
+            return Long.valueOf(value.substring(1, value.length() - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package net.projectsync.karatedemo.controller;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Per-client rate limit: every client has a token bucket ('tokensPerSecond', at most 'burst' tokens),
+ * a request takes 'cost' tokens (more for list, export and batch, see RateLimitConfig).
+ * - the client is the value of 'clientHeader' (set by a trusted gateway) or else the remote address
+ * - without enough tokens: 429 with Retry-After and no body, before any other work (no error page dispatch)
+ * - buckets are kept in a bounded cache, an idle bucket is dropped once it would be full again (same as a new one)
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final Cache<String, TokenBucket> buckets;
+    private final Function<String, TokenBucket> newBucket;
+    private final int burst;
+    private final String clientHeader;
+    private final ToIntFunction<HttpServletRequest> cost;
+    private final LongSupplier clock;
+    private final LongAdder rejected = new LongAdder();
+
+    public RateLimitFilter(double tokensPerSecond, int burst, long maxClients, String clientHeader,
+                           ToIntFunction<HttpServletRequest> cost) {
+        this(tokensPerSecond, burst, maxClients, clientHeader, cost, System::nanoTime);
+    }
+
+    RateLimitFilter(double tokensPerSecond, int burst, long maxClients, String clientHeader,
+                    ToIntFunction<HttpServletRequest> cost, LongSupplier clock) {
+        this.burst = burst;
+        this.clientHeader = clientHeader == null || clientHeader.isBlank() ? null : clientHeader;
+        this.cost = cost;
+        this.clock = clock;
+        this.newBucket = client -> new TokenBucket(tokensPerSecond, burst, clock.getAsLong());
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterAccess(Duration.ofNanos((long) (burst * 1_000_000_000L / tokensPerSecond)).plusSeconds(1))
+                .build();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        // A request costing more than the burst could never pass, it takes the whole bucket instead
+        int tokens = Math.min(cost.applyAsInt(request), burst);
+        long waitNanos = buckets.get(client(request), newBucket).tryAcquire(tokens, clock.getAsLong());
+        if (waitNanos > 0) {
+            rejected.increment();
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999))));
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    // Requests rejected so far, published as bankproducts.requests.rejected{reason=rate}
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    // Clients with a bucket, published as bankproducts.ratelimit.clients
+    public long clients() {
+        return buckets.estimatedSize();
+    }
+
+    private String client(HttpServletRequest request) {
+        if (clientHeader != null) {
+            String client = request.getHeader(clientHeader);
+            if (client != null && !client.isBlank()) {
+                return client;
+            }
+        }
+        return request.getRemoteAddr();
+    }
+}
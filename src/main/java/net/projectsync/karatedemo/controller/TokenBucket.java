@@ -0,0 +1,37 @@
+package net.projectsync.karatedemo.controller;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket of one client, kept as a single timestamp (generic cell rate algorithm):
+ * 'fullAt' is the time at which the bucket is full again, taking n tokens moves it n * nanosPerToken later.
+ * Updated with compare-and-set, no lock and no allocation per request
+ */
+class TokenBucket {
+
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final AtomicLong fullAt;
+
+    TokenBucket(double tokensPerSecond, int burst, long now) {
+        this.nanosPerToken = Math.max(1, (long) (1_000_000_000L / tokensPerSecond));
+        this.burstNanos = burst * nanosPerToken;
+        this.fullAt = new AtomicLong(now);
+    }
+
+    // 0 when the tokens were taken, else the nanos until they will be available (nothing is taken)
+    long tryAcquire(int tokens, long now) {
+        long costNanos = tokens * nanosPerToken;
+        while (true) {
+            long current = fullAt.get();
+            long next = (current - now > 0 ? current : now) + costNanos;
+            long used = next - now;
+            if (used > burstNanos) {
+                return used - burstNanos;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package net.projectsync.karatedemo.controller;
+
+import net.projectsync.karatedemo.config.BankProductProperties;
+import net.projectsync.karatedemo.service.WriteBehindRejectedException;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Back-pressure of the write-behind queue as HTTP status, with Retry-After (bankproducts.ingest.retry-after):
+ * - queue full                       -> 429 Too Many Requests, nothing was stored
+ * - queued but not written in time   -> 503 Service Unavailable, the product may still be stored
+ */
+@RestControllerAdvice
+// The application has the properties from @ConfigurationPropertiesScan, @WebMvcTest slices get them from here
+@EnableConfigurationProperties(BankProductProperties.class)
+public class WriteBehindExceptionHandler {
+
+    private final String retryAfterSeconds;
+
+    public WriteBehindExceptionHandler(BankProductProperties properties) {
+        this.retryAfterSeconds = String.valueOf(Math.max(1, properties.getIngest().getRetryAfter().toSeconds()));
+    }
+
+    @ExceptionHandler(WriteBehindRejectedException.class)
+    public ResponseEntity<Void> handleRejected(WriteBehindRejectedException e) {
+        HttpStatus status = e.getReason() == WriteBehindRejectedException.Reason.FULL
+                ? HttpStatus.TOO_MANY_REQUESTS
+                : HttpStatus.SERVICE_UNAVAILABLE;
+        return ResponseEntity.status(status).header(HttpHeaders.RETRY_AFTER, retryAfterSeconds).build();
+    }
+}
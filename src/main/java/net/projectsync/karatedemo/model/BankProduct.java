@@ -1,25 +1,56 @@
 package net.projectsync.karatedemo.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Version;
+import javax.validation.constraints.NotBlank;
 
+// Second-level cache candidate, only cached when hibernate.cache.use_second_level_cache=true (see application.properties)
+// Region settings: application.conf
+// READ_WRITE: soft locks keep readers of this node from seeing values older than a committed update
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "bankProduct")
 @Data
 public class BankProduct {
 
+    // Ids reserved by one nextval() of bank_product_seq, also its INCREMENT BY (db/bank_product.sql)
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    // Pooled sequence: one nextval() reserves a block of ids, and unlike IDENTITY it lets Hibernate batch INSERTs.
+    // Databases that already hold rows: IdSequenceInitializer moves the sequence past them on startup
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bank_product_seq")
+    @SequenceGenerator(name = "bank_product_seq", sequenceName = "bank_product_seq", allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
+    // Required for the items of a batch only (BankProductBatchService). Single creates and updates accept any title,
+    // neither @Valid (Default group) nor Hibernate's validation before an INSERT check the BatchItem group
+    @NotBlank(groups = BatchItem.class)
     private String title;
 
+    // Optimistic locking version, incremented by every update. Also the ETag of the product
+    // Nullable: rows created before this column existed have no version yet
+    @Version
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long version;
+
     public BankProduct() {}
 
     public BankProduct(String title) {
         this.title = title;
     }
+
+    // Validation group of the constraints checked per item of POST /api/v1/bankproducts/batch
+    public interface BatchItem {
+    }
 }
 
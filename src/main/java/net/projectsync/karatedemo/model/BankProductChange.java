@@ -0,0 +1,57 @@
+package net.projectsync.karatedemo.model;
+
+import lombok.Data;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import java.time.Instant;
+
+/**
+ * Outbox row: one change of a BankProduct, written in the transaction of the change (BankProductOutbox)
+ * and served by GET /api/v1/bankproducts/changes in 'seq' order.
+ * - title, version -> state after the change, null for DELETED
+ */
+@Entity
+@Table(name = "bank_product_change", indexes = @Index(name = "bank_product_change_recorded_at", columnList = "recorded_at"))
+@Data
+public class BankProductChange {
+
+    public enum Type { CREATED, UPDATED, DELETED }
+
+    // Increment 1, taken by the INSERT itself (see BankProductOutbox): seq order is the order of the inserts on every node
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bank_product_change_seq")
+    @SequenceGenerator(name = "bank_product_change_seq", sequenceName = "bank_product_change_seq", allocationSize = 1)
+    private Long seq;
+
+    @Column(nullable = false)
+    private Long productId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Type type;
+
+    private String title;
+
+    private Long version;
+
+    @Column(nullable = false)
+    private Instant recordedAt;
+
+    public BankProductChange() {}
+
+    public BankProductChange(Long productId, Type type, String title, Long version, Instant recordedAt) {
+        this.productId = productId;
+        this.type = type;
+        this.title = title;
+        this.version = version;
+        this.recordedAt = recordedAt;
+    }
+}
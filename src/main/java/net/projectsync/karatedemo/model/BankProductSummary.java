@@ -0,0 +1,12 @@
+package net.projectsync.karatedemo.model;
+
+/**
+ * Lightweight read-only view of a product (Spring Data interface projection).
+ * Only the selected columns are read, no entity is created or tracked by the persistence context
+ */
+public interface BankProductSummary {
+
+    Long getId();
+
+    String getTitle();
+}
@@ -0,0 +1,21 @@
+package net.projectsync.karatedemo.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Value;
+
+/**
+ * Immutable read model of a product, used by every read endpoint.
+ * Selected with a JPQL constructor expression: no entity instance, no persistence context entry,
+ * no dirty-checking snapshot. Safe to share between requests (e.g. from the cache).
+ * Same JSON shape as BankProduct.
+ */
+@Value
+public class BankProductView {
+
+    Long id;
+
+    String title;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    Long version;
+}
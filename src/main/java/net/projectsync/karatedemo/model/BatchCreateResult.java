@@ -0,0 +1,21 @@
+package net.projectsync.karatedemo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+/**
+ * Response of POST /api/v1/bankproducts/batch: counters plus one result per item, ordered by index
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchCreateResult {
+
+    private int created;
+
+    private int failed;
+
+    private List<BatchItemResult> items;
+}
@@ -0,0 +1,36 @@
+package net.projectsync.karatedemo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+/**
+ * Outcome of one item of a bulk create request.
+ * - index  -> position of the item in the request (0-based)
+ * - id     -> generated id, set only when the item was created
+ * - errors -> validation or parse errors, set only when the item was rejected
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchItemResult {
+
+    public enum Status { CREATED, INVALID }
+
+    private int index;
+
+    private Status status;
+
+    private Long id;
+
+    private List<String> errors;
+
+    public static BatchItemResult created(int index, Long id) {
+        return new BatchItemResult(index, Status.CREATED, id, null);
+    }
+
+    public static BatchItemResult invalid(int index, List<String> errors) {
+        return new BatchItemResult(index, Status.INVALID, null, errors);
+    }
+}
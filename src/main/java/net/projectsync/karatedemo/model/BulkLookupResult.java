@@ -0,0 +1,21 @@
+package net.projectsync.karatedemo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+/**
+ * Result of a lookup by ids.
+ * - items   -> found products, in the order of the requested ids (duplicates removed)
+ * - missing -> requested ids without a product, in request order
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkLookupResult {
+
+    private List<BankProductView> items;
+
+    private List<Long> missing;
+}
@@ -0,0 +1,22 @@
+package net.projectsync.karatedemo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Aggregate over all products that changes whenever a product is created, updated or deleted:
+ * - count      -> changes on create/delete
+ * - idSum      -> changes when rows are replaced (ids are never reused)
+ * - versionSum -> changes on every update
+ * Computed by one aggregate query, without loading any product.
+ */
+@Data
+@AllArgsConstructor
+public class CatalogVersion {
+
+    private long count;
+
+    private long idSum;
+
+    private long versionSum;
+}
@@ -0,0 +1,21 @@
+package net.projectsync.karatedemo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+/**
+ * One page of the change feed (GET /api/v1/bankproducts/changes).
+ * - items      -> changes after the requested 'since', ordered by seq
+ * - nextSince  -> seq to pass as 'since' for the next request, the requested 'since' when there are no new changes
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChangeFeedPage {
+
+    private List<BankProductChange> items;
+
+    private long nextSince;
+}
@@ -0,0 +1,21 @@
+package net.projectsync.karatedemo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+/**
+ * One page of a keyset (cursor) paginated result.
+ * - items      -> rows of this page, ordered by id
+ * - nextCursor -> id to pass as 'after' for the next page, null when this is the last page
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+
+    private List<T> items;
+
+    private Long nextCursor;
+}
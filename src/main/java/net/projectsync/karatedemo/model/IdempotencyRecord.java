@@ -0,0 +1,52 @@
+package net.projectsync.karatedemo.model;
+
+import lombok.Data;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.time.Instant;
+
+/**
+ * Response of a request with an Idempotency-Key, replayed for repeated requests with the same key.
+ * - fingerprint -> hash of the request (method, path, body), a key can only be replayed for the same request
+ * - status      -> null while the first request is still in progress
+ * Stored in memory or in the table idempotency_record (bankproducts.idempotency.store)
+ */
+@Entity
+@Table(name = "idempotency_record", indexes = @Index(name = "idempotency_record_created_at", columnList = "created_at"))
+@Data
+public class IdempotencyRecord {
+
+    @Id
+    private String idempotencyKey;
+
+    @Column(nullable = false, length = 64)
+    private String fingerprint;
+
+    private Integer status;
+
+    private String location;
+
+    private String etag;
+
+    // JSON response body, a single product
+    @Column(length = 10_000)
+    private String body;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    public IdempotencyRecord() {}
+
+    public IdempotencyRecord(String idempotencyKey, String fingerprint, Instant createdAt) {
+        this.idempotencyKey = idempotencyKey;
+        this.fingerprint = fingerprint;
+        this.createdAt = createdAt;
+    }
+
+    public boolean isCompleted() {
+        return status != null;
+    }
+}
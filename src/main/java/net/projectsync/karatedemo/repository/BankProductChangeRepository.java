@@ -0,0 +1,37 @@
+package net.projectsync.karatedemo.repository;
+
+import net.projectsync.karatedemo.model.BankProductChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+// Outbox rows are inserted by BankProductOutbox (JDBC), this repository only reads and prunes them
+public interface BankProductChangeRepository extends JpaRepository<BankProductChange, Long> {
+
+    // Keyset page on the primary key, like BankProductRepository.findViewsAfter
+    @Query("select c from BankProductChange c where c.seq > :since order by c.seq")
+    List<BankProductChange> findChangesAfter(@Param("since") long since, Pageable pageable);
+
+    @Query("select max(c.seq) from BankProductChange c")
+    Long findMaxSeq();
+
+    // The database clock, which also sets recorded_at (see BankProductOutbox): no skew between the nodes' clocks
+    @Query(value = "select localtimestamp", nativeQuery = true)
+    Timestamp findDatabaseTime();
+
+    // Newest change recorded before 'cutoff' (index on recorded_at)
+    @Query("select max(c.seq) from BankProductChange c where c.recordedAt < :cutoff")
+    Long findMaxSeqRecordedBefore(@Param("cutoff") Instant cutoff);
+
+    // Single DELETE statement on the primary key range
+    @Transactional
+    @Modifying
+    @Query("delete from BankProductChange c where c.seq <= :seq")
+    int deleteUpTo(@Param("seq") long seq);
+}
@@ -1,10 +1,117 @@
 package net.projectsync.karatedemo.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import net.projectsync.karatedemo.model.BankProduct;
+import net.projectsync.karatedemo.model.BankProductSummary;
+import net.projectsync.karatedemo.model.BankProductView;
+import net.projectsync.karatedemo.model.CatalogVersion;
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_CACHE_REGION;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 public interface BankProductRepository extends JpaRepository<BankProduct, Long> {
 
     // JpaRepository already provides standard CRUD methods:
     // save(), findById(), findAll(), deleteById(), etc.
+
+    // Region of the cached "all products" queries (hibernate.cache.use_query_cache=true).
+    // Hibernate invalidates it on every insert/update/delete of bank_product, including the bulk statements below
+    String ALL_PRODUCTS_REGION = "bankProductQueries";
+
+    @Override
+    @QueryHints({
+            @QueryHint(name = HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HINT_CACHE_REGION, value = ALL_PRODUCTS_REGION)
+    })
+    List<BankProduct> findAll();
+
+    // Read model queries: constructor expressions select the columns into immutable BankProductView instances,
+    // Hibernate creates no entities, so nothing is added to the persistence context
+    String VIEW = "select new net.projectsync.karatedemo.model.BankProductView(p.id, p.title, p.version) from BankProduct p ";
+
+    // Read-only transaction of its own: the loader of the product cache, called outside of any transaction
+    @Transactional(readOnly = true)
+    @Query(VIEW + "where p.id = :id")
+    Optional<BankProductView> findViewById(@Param("id") Long id);
+
+    @QueryHints({
+            @QueryHint(name = HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HINT_CACHE_REGION, value = ALL_PRODUCTS_REGION)
+    })
+    @Query(VIEW + "order by p.id")
+    List<BankProductView> findAllViews();
+
+    // Views for a set of ids, in no particular order. Keep 'ids' bounded, the caller splits large sets
+    @Query(VIEW + "where p.id in :ids")
+    List<BankProductView> findViewsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Keyset page of views: WHERE id > :after ORDER BY id LIMIT :pageSize
+    // Uses the primary key index, so the cost does not grow with the page depth (unlike OFFSET)
+    // Pass PageRequest.of(0, size): page 0 adds only a LIMIT and a List return type skips the COUNT query
+    @Query(VIEW + "where p.id > :after order by p.id")
+    List<BankProductView> findViewsAfter(@Param("after") Long after, Pageable pageable);
+
+    // Title search, keyset paginated: WHERE lower(title) LIKE :pattern AND id > :after ORDER BY id LIMIT :pageSize
+    // 'pattern' is lower case with LIKE wildcards escaped by '\'. Indexes find the matching rows (see SearchIndexInitializer):
+    // - 'abc%'  -> btree on lower(title) text_pattern_ops (PostgreSQL)
+    // - '%abc%' -> trigram GIN index on lower(title) (PostgreSQL, pg_trgm)
+    // - H2      -> searchByTitleLower()
+    // They do not give the id order: the matches after :after are sorted (or the primary key is walked and filtered),
+    // so a page costs in proportion to the matching rows, not to the page size. Cheap for selective terms only
+    @Query("select p.id as id, p.title as title from BankProduct p "
+            + "where lower(p.title) like :pattern escape '\\' and p.id > :after order by p.id")
+    List<BankProductSummary> searchByTitle(@Param("pattern") String pattern, @Param("after") Long after, Pageable pageable);
+
+    // Same search on H2, which has no function indexes: matches the indexed generated column title_lower = lower(title).
+    // Not mapped by BankProduct, the column only exists once SearchIndexInitializer has created it
+    @Query(value = "select p.id as id, p.title as title from {h-schema}bank_product p "
+            + "where p.title_lower like :pattern escape '\\' and p.id > :after order by p.id", nativeQuery = true)
+    List<BankProductSummary> searchByTitleLower(@Param("pattern") String pattern, @Param("after") Long after, Pageable pageable);
+
+    // Streams every row as a view through a server-side cursor instead of materializing a List
+    // - fetch size  -> the JDBC driver keeps only one batch of rows in memory (PostgreSQL needs an open transaction for this)
+    // - views       -> no entities, so nothing to detach or dirty-check after each row
+    // The caller must run inside a transaction and close the stream (try-with-resources)
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(VIEW + "order by p.id")
+    Stream<BankProductView> streamAllViews();
+
+    // Single statement UPDATE (no SELECT + dirty check + UPDATE). Returns the updated row count, 0 = no such id
+    // flush/clear keep the persistence context consistent with the bulk statement, which bypasses it
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    // Bulk statements bypass @Version, so the version is incremented explicitly
+    @Query("update BankProduct p set p.title = :title, p.version = coalesce(p.version, 0) + 1 where p.id = :id")
+    int updateTitleById(@Param("id") Long id, @Param("title") String title);
+
+    // Optimistic locking variant: updates only if the row is still at 'version'. 0 = no such id or stale version
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update BankProduct p set p.title = :title, p.version = p.version + 1 where p.id = :id and p.version = :version")
+    int updateTitleByIdAndVersion(@Param("id") Long id, @Param("title") String title, @Param("version") Long version);
+
+    // Single statement DELETE (deleteById() loads the entity first). Returns the deleted row count, 0 = no such id
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from BankProduct p where p.id = :id")
+    int deleteProductById(@Param("id") Long id);
+
+    // Version only (ETag checks), without loading the product
+    @Query("select p.version from BankProduct p where p.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    // Catalog aggregate (ETag of the list), one row computed by the database
+    @Query("select new net.projectsync.karatedemo.model.CatalogVersion(count(p), coalesce(sum(p.id), 0L), coalesce(sum(p.version), 0L)) from BankProduct p")
+    CatalogVersion findCatalogVersion();
 }
@@ -0,0 +1,113 @@
+package net.projectsync.karatedemo.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import net.projectsync.karatedemo.config.BankProductProperties;
+import net.projectsync.karatedemo.model.BankProduct;
+import net.projectsync.karatedemo.model.BatchCreateResult;
+import net.projectsync.karatedemo.model.BatchItemResult;
+import net.projectsync.karatedemo.repository.BankProductRepository;
+import javax.persistence.EntityManager;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import javax.validation.groups.Default;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+public class BankProductBatchService {
+
+    private final BankProductRepository repository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final BankProductProperties properties;
+    private final BankProductOutbox outbox;
+
+    // CREATE (bulk)
+    // Items are read one by one from the request body and persisted in chunks, one transaction per chunk.
+    // Invalid items are reported and skipped. A malformed item ends the batch: the items before it are kept
+    public BatchCreateResult createProducts(MappingIterator<BankProduct> products) {
+        int chunkSize = properties.getBatch().getChunkSize();
+        int maxItems = properties.getBatch().getMaxItems();
+
+        List<BatchItemResult> results = new ArrayList<>();
+        List<BankProduct> chunk = new ArrayList<>(chunkSize);
+        List<Integer> chunkIndexes = new ArrayList<>(chunkSize);
+        int index = 0;
+
+        try {
+            while (products.hasNextValue()) {
+                if (index >= maxItems) {
+                    results.add(BatchItemResult.invalid(index, List.of("batch is limited to " + maxItems + " items")));
+                    break;
+                }
+                BankProduct product = products.nextValue();
+                List<String> errors = validate(product);
+                if (errors.isEmpty()) {
+                    // Always new rows: ids are generated, versions start at 0
+                    product.setId(null);
+                    product.setVersion(null);
+                    chunk.add(product);
+                    chunkIndexes.add(index);
+                } else {
+                    results.add(BatchItemResult.invalid(index, errors));
+                }
+                index++;
+
+                if (chunk.size() == chunkSize) {
+                    persistChunk(chunk, chunkIndexes, results);
+                }
+            }
+        } catch (IOException e) {
+            results.add(BatchItemResult.invalid(index, List.of("malformed JSON: " + e.getMessage())));
+        }
+        persistChunk(chunk, chunkIndexes, results);
+
+        results.sort(Comparator.comparingInt(BatchItemResult::getIndex));
+        int created = (int) results.stream().filter(r -> r.getStatus() == BatchItemResult.Status.CREATED).count();
+        return new BatchCreateResult(created, results.size() - created, results);
+    }
+
+    private List<String> validate(BankProduct product) {
+        if (product == null) {
+            return List.of("item must be a JSON object");
+        }
+        Set<ConstraintViolation<BankProduct>> violations = validator.validate(product, Default.class, BankProduct.BatchItem.class);
+        return violations.stream()
+                .map(v -> v.getPropertyPath() + " " + v.getMessage())
+                .collect(Collectors.toList());
+    }
+
+    // Persists new products and their outbox rows in one transaction with batched INSERTs,
+    // the generated ids are set on the given instances
+    // Also the write path of BankProductWriteBehindQueue
+    public void saveAll(List<BankProduct> products) {
+        transactionTemplate.executeWithoutResult(status -> {
+            repository.saveAll(products);
+            outbox.recordCreated(products);
+            // Send the batched INSERTs now and drop the entities, so the persistence context does not grow
+            entityManager.flush();
+            entityManager.clear();
+        });
+    }
+
+    private void persistChunk(List<BankProduct> chunk, List<Integer> chunkIndexes, List<BatchItemResult> results) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        saveAll(chunk);
+        for (int i = 0; i < chunk.size(); i++) {
+            results.add(BatchItemResult.created(chunkIndexes.get(i), chunk.get(i).getId()));
+        }
+        chunk.clear();
+        chunkIndexes.clear();
+    }
+}
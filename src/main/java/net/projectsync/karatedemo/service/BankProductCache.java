@@ -0,0 +1,87 @@
+package net.projectsync.karatedemo.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import net.projectsync.karatedemo.config.BankProductProperties;
+import net.projectsync.karatedemo.config.ReplicaRoutingDataSource;
+import net.projectsync.karatedemo.model.BankProductView;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Bounded in-process cache of products by id (size and TTL based eviction).
+ *
+ * Consistency rules:
+ * - get() loads a missing id at most once, concurrent readers of the same id wait for that load
+ * - invalidate() waits for an in-flight load of the same id, so a value read before a write
+ *   can not be stored after the write has invalidated it
+ * - writers must call invalidate() after their change is committed, or invalidateAfterTransaction() within it
+ * - missing ids are not cached, so a newly created product is visible immediately
+ *
+ * Cached values are immutable views, so they can be shared between requests.
+ */
+@Component
+public class BankProductCache {
+
+    private final boolean enabled;
+    private final Cache<Long, BankProductView> cache;
+
+    public BankProductCache(BankProductProperties properties) {
+        BankProductProperties.Cache config = properties.getCache();
+        this.enabled = config.isEnabled();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .expireAfterWrite(config.getTtl())
+                .recordStats()
+                .build();
+    }
+
+    // Read-through: returns the cached product or loads it with 'loader' and caches it if found
+    public Optional<BankProductView> get(Long id, Function<Long, Optional<BankProductView>> loader) {
+        if (!enabled) {
+            return loader.apply(id);
+        }
+        // A null result from the mapping function is not stored.
+        // Loaded from the primary when read replicas are on: a row from a lagging replica would be served for the whole TTL
+        return Optional.ofNullable(cache.get(id, key -> ReplicaRoutingDataSource.onPrimary(() -> loader.apply(key)).orElse(null)));
+    }
+
+    // Cached product only, never loads. Used for cheap version checks
+    public Optional<BankProductView> peek(Long id) {
+        return enabled ? Optional.ofNullable(cache.getIfPresent(id)) : Optional.empty();
+    }
+
+    public void invalidate(Long id) {
+        if (id != null) {
+            cache.invalidate(id);
+        }
+    }
+
+    // invalidate() once the current transaction has ended (committed or rolled back), right away without a transaction
+    public void invalidateAfterTransaction(Long id) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate(id);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                invalidate(id);
+            }
+        });
+    }
+
+    // hit/miss/eviction counters
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    // Underlying Caffeine cache, for metrics binding only (size, hit/miss/eviction meters)
+    public Cache<Long, BankProductView> nativeCache() {
+        return cache;
+    }
+}
@@ -0,0 +1,217 @@
+package net.projectsync.karatedemo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import net.projectsync.karatedemo.config.BankProductProperties;
+import net.projectsync.karatedemo.model.BankProductChange;
+import net.projectsync.karatedemo.model.ChangeFeedPage;
+import net.projectsync.karatedemo.repository.BankProductChangeRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Change feed over the outbox (bank_product_change), see bankproducts.changes.*
+ * - getChanges()  -> changes after a seq, oldest first, only those older than 'settle' and not after a missing seq
+ *                    younger than 'gap-timeout' (database clock, like recorded_at)
+ * - await()       -> long-poll: the listener gets the next non-empty page. Waiters are woken by the commits of
+ *                    this node, and for changes of other nodes by a check of the newest seq every 'settle'
+ * - changes older than 'retention' are deleted every 'prune-interval'
+ */
+@Slf4j
+@Service
+public class BankProductChangeFeed {
+
+    private final BankProductChangeRepository repository;
+    private final BankProductProperties.Changes config;
+    private final Set<Waiter> waiters = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean wakeScheduled = new AtomicBoolean();
+    private volatile Long lastMaxSeq;
+    private final ScheduledExecutorService scheduler;
+
+    public BankProductChangeFeed(BankProductChangeRepository repository, BankProductProperties properties) {
+        this.repository = repository;
+        this.config = properties.getChanges();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "bankproducts-change-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long prune = config.getPruneInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::prune, prune, prune, TimeUnit.MILLISECONDS);
+        long settle = Math.max(config.getSettle().toMillis(), 100);
+        scheduler.scheduleWithFixedDelay(this::checkNewestSeq, settle, settle, TimeUnit.MILLISECONDS);
+    }
+
+    // CHANGES: at most 'limit' (capped at MAX_PAGE_SIZE) changes after 'since'
+    public ChangeFeedPage getChanges(long since, int limit) {
+        return read(since, limit).page;
+    }
+
+    // Seq of the newest change, 0 when there is none: 'since' to follow only the changes from now on
+    public long latestSeq() {
+        Long seq = repository.findMaxSeq();
+        return seq != null ? seq : 0;
+    }
+
+    // Long-poll wait actually granted for a requested one
+    public Duration waitFor(Duration requested) {
+        return requested.compareTo(config.getMaxWait()) > 0 ? config.getMaxWait() : requested;
+    }
+
+    // CHANGES (long-poll): 'listener' is called once, on the change feed thread, with the first non-empty page after 'since'
+    // Returns the handle that cancels the wait (call it when the request ends), null when already
+    // 'max-waiters' are waiting: the caller answers right away instead
+    public Runnable await(long since, int limit, Consumer<ChangeFeedPage> listener) {
+        if (waiters.size() >= config.getMaxWaiters()) {
+            return null;
+        }
+        Waiter waiter = new Waiter(since, limit, listener);
+        waiters.add(waiter);
+        // Changes committed before the registration would not wake this waiter any more
+        check(waiter);
+        return () -> waiters.remove(waiter);
+    }
+
+    // Once committed, the changes are served after 'settle': wake the waiters then
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onChanged(BankProductChangedEvent event) {
+        scheduleWake();
+    }
+
+    // Deletes the changes older than 'retention'
+    void prune() {
+        try {
+            Long seq = repository.findMaxSeqRecordedBefore(Instant.now().minus(config.getRetention()));
+            if (seq != null) {
+                int deleted = repository.deleteUpTo(seq);
+                log.debug("Pruned {} product changes up to seq {}", deleted, seq);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Pruning the product changes failed: {}", e.getMessage());
+        }
+    }
+
+    // One cheap query for all waiters: wakes them when the newest seq has changed, e.g. by a commit of another node
+    private void checkNewestSeq() {
+        if (waiters.isEmpty()) {
+            return;
+        }
+        try {
+            Long maxSeq = repository.findMaxSeq();
+            if (maxSeq != null && !maxSeq.equals(lastMaxSeq)) {
+                lastMaxSeq = maxSeq;
+                scheduleWake();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Checking for new product changes failed: {}", e.getMessage());
+        }
+    }
+
+    // Long-polls waiting, for tests and diagnostics
+    int waiting() {
+        return waiters.size();
+    }
+
+    @PreDestroy
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void scheduleWake() {
+        scheduleWake(config.getSettle().toMillis());
+    }
+
+    // Changes are held back: not before 100ms, a missing seq can hold them back for 'gap-timeout'
+    private void scheduleRecheck() {
+        scheduleWake(Math.max(config.getSettle().toMillis(), 100));
+    }
+
+    private void scheduleWake(long delayMillis) {
+        if (!waiters.isEmpty() && wakeScheduled.compareAndSet(false, true)) {
+            scheduler.schedule(() -> {
+                wakeScheduled.set(false);
+                waiters.forEach(this::check);
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void check(Waiter waiter) {
+        try {
+            Slice slice = read(waiter.since, waiter.limit);
+            if (!slice.page.getItems().isEmpty()) {
+                if (waiters.remove(waiter)) {
+                    waiter.listener.accept(slice.page);
+                }
+            } else if (slice.unsettled) {
+                scheduleRecheck();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Reading the product changes for a long-poll failed: {}", e.getMessage());
+        }
+    }
+
+    // The page stops before the first change younger than 'settle', and before a missing seq (a lower seq whose
+    // transaction has not committed yet) unless the change after it is older than 'gap-timeout'.
+    // Both compare recorded_at with the database clock, so the clocks of the nodes do not matter
+    private Slice read(long since, int limit) {
+        int size = Math.min(Math.max(limit, 1), BankProductService.MAX_PAGE_SIZE);
+        List<BankProductChange> changes = repository.findChangesAfter(since, PageRequest.of(0, size));
+        if (changes.isEmpty()) {
+            return new Slice(new ChangeFeedPage(List.of(), since), false);
+        }
+        Instant now = repository.findDatabaseTime().toInstant();
+        Instant settledBefore = now.minus(config.getSettle());
+        Instant gapClosedBefore = now.minus(config.getGapTimeout());
+        long expectedSeq = since + 1;
+        int settled = 0;
+        while (settled < changes.size()) {
+            BankProductChange change = changes.get(settled);
+            if (change.getRecordedAt().isAfter(settledBefore)
+                    || change.getSeq() != expectedSeq && change.getRecordedAt().isAfter(gapClosedBefore)) {
+                break;
+            }
+            expectedSeq = change.getSeq() + 1;
+            settled++;
+        }
+        List<BankProductChange> items = new ArrayList<>(changes.subList(0, settled));
+        long nextSince = items.isEmpty() ? since : items.get(items.size() - 1).getSeq();
+        return new Slice(new ChangeFeedPage(items, nextSince), settled < changes.size());
+    }
+
+    private static final class Slice {
+
+        private final ChangeFeedPage page;
+        private final boolean unsettled;
+
+        private Slice(ChangeFeedPage page, boolean unsettled) {
+            this.page = page;
+            this.unsettled = unsettled;
+        }
+    }
+
+    private static final class Waiter {
+
+        private final long since;
+        private final int limit;
+        private final Consumer<ChangeFeedPage> listener;
+
+        private Waiter(long since, int limit, Consumer<ChangeFeedPage> listener) {
+            this.since = since;
+            this.limit = limit;
+            this.listener = listener;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package net.projectsync.karatedemo.service;
+
+import lombok.Value;
+import net.projectsync.karatedemo.model.BankProductChange;
+import java.util.List;
+
+/**
+ * Published by BankProductOutbox in the transaction of the changes. Listen with
+ * @TransactionalEventListener to act only once they are committed
+ */
+@Value
+public class BankProductChangedEvent {
+
+    // Changes of one write, without seq (taken by the database)
+    List<BankProductChange> changes;
+}
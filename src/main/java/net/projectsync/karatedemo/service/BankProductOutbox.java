@@ -0,0 +1,90 @@
+package net.projectsync.karatedemo.service;
+
+import net.projectsync.karatedemo.model.BankProduct;
+import net.projectsync.karatedemo.model.BankProductChange;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Writes the outbox rows (bank_product_change) of product changes, in the caller's transaction:
+ * a change is in the feed if and only if it is committed.
+ *
+ * Plain JDBC batch INSERTs with the sequence call inside the statement: one statement batch per write and
+ * no extra round trip for the seq, which is taken in insert order (increment 1, see BankProductChange).
+ * recorded_at is set by the database clock, which the change feed compares it with
+ */
+@Component
+public class BankProductOutbox {
+
+    private static final String SEQUENCE = "bank_product_change_seq";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher events;
+    private final String schemaPrefix;
+    private volatile String insertSql;
+
+    public BankProductOutbox(JdbcTemplate jdbcTemplate, ApplicationEventPublisher events,
+                             @Value("${spring.jpa.properties.hibernate.default_schema:}") String schema) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.events = events;
+        this.schemaPrefix = schema.isBlank() ? "" : schema + ".";
+    }
+
+    // Products just persisted (ids assigned)
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCreated(List<BankProduct> products) {
+        Instant now = Instant.now();
+        record(products.stream()
+                .map(p -> new BankProductChange(p.getId(), BankProductChange.Type.CREATED, p.getTitle(), p.getVersion(), now))
+                .collect(Collectors.toList()));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordUpdated(Long id, String title, Long version) {
+        record(List.of(new BankProductChange(id, BankProductChange.Type.UPDATED, title, version, Instant.now())));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordDeleted(Long id) {
+        record(List.of(new BankProductChange(id, BankProductChange.Type.DELETED, null, null, Instant.now())));
+    }
+
+    private void record(List<BankProductChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(insertSql(), changes, changes.size(), (statement, change) -> {
+            statement.setLong(1, change.getProductId());
+            statement.setString(2, change.getType().name());
+            statement.setString(3, change.getTitle());
+            statement.setObject(4, change.getVersion());
+        });
+        events.publishEvent(new BankProductChangedEvent(changes));
+    }
+
+    // The next value syntax depends on the database, looked up on first use
+    private String insertSql() {
+        String sql = insertSql;
+        if (sql == null) {
+            String database = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+            boolean postgres = "PostgreSQL".equals(database);
+            String nextSeq = postgres
+                    ? "nextval('" + schemaPrefix + SEQUENCE + "')"
+                    : "next value for " + schemaPrefix + SEQUENCE;
+            // PostgreSQL: the time of the statement, localtimestamp would be the start of the transaction
+            String now = postgres ? "clock_timestamp()::timestamp" : "localtimestamp";
+            sql = "insert into " + schemaPrefix + "bank_product_change (seq, product_id, type, title, version, recorded_at) "
+                    + "values (" + nextSeq + ", ?, ?, ?, ?, " + now + ")";
+            insertSql = sql;
+        }
+        return sql;
+    }
+}
@@ -1,50 +1,263 @@
 package net.projectsync.karatedemo.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import net.projectsync.karatedemo.config.BankProductProperties;
+import net.projectsync.karatedemo.config.SearchIndexInitializer;
 import net.projectsync.karatedemo.model.BankProduct;
+import net.projectsync.karatedemo.model.BankProductSummary;
+import net.projectsync.karatedemo.model.BankProductView;
+import net.projectsync.karatedemo.model.BulkLookupResult;
+import net.projectsync.karatedemo.model.CatalogVersion;
+import net.projectsync.karatedemo.model.CursorPage;
 import net.projectsync.karatedemo.repository.BankProductRepository;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class BankProductService {
 
+    // Upper bound for one cursor page, so a single request cannot pull the whole table
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    // Shortest substring search term: trigram indexes can not serve terms of 1 or 2 characters
+    public static final int MIN_SUBSTRING_LENGTH = 3;
+
+    public enum SearchMatch {
+        PREFIX, SUBSTRING
+    }
+
     private final BankProductRepository repository;
+    private final ObjectMapper objectMapper;
+    private final BankProductCache cache;
+    private final BankProductProperties properties;
+    private final BankProductOutbox outbox;
+    private final ObjectProvider<SearchIndexInitializer> searchIndexes;
+
+    // Writes: the change is recorded in the outbox in the same transaction (GET /api/v1/bankproducts/changes)
 
     // CREATE
+    @Transactional
     public BankProduct createProduct(BankProduct product) {
-        return repository.save(product);
+        // Always a new row: ids are generated and a new row starts at version 0
+        product.setId(null);
+        product.setVersion(null);
+        BankProduct created = repository.save(product);
+        outbox.recordCreated(List.of(created));
+        return created;
     }
 
-    // READ (by ID)
-    public Optional<BankProduct> getProductById(Long id) {
-        return repository.findById(id);
+    // READ (by ID), served from the cache when possible
+    // Not transactional: a transaction takes a pool connection on begin(), even for a cache hit.
+    // Only the loader (findViewById) runs in a read-only transaction
+    public Optional<BankProductView> getProductById(Long id) {
+        return cache.get(id, repository::findViewById);
+    }
+
+    // READ (by IDs): cached products are taken from the cache, the others are loaded with IN queries of at most
+    // 'bankproducts.lookup.chunk-size' ids. Loaded products are not added to the cache (only get() may fill it,
+    // see BankProductCache). Throws IllegalArgumentException for more than 'bankproducts.lookup.max-ids' ids
+    @Transactional(readOnly = true)
+    public BulkLookupResult getProductsByIds(List<Long> ids) {
+        BankProductProperties.Lookup config = properties.getLookup();
+        Set<Long> requested = new LinkedHashSet<>(ids);
+        requested.remove(null);
+        if (requested.size() > config.getMaxIds()) {
+            throw new IllegalArgumentException("At most " + config.getMaxIds() + " ids per lookup");
+        }
+
+        Map<Long, BankProductView> found = new HashMap<>();
+        List<Long> toLoad = new ArrayList<>();
+        for (Long id : requested) {
+            Optional<BankProductView> cached = cache.peek(id);
+            if (cached.isPresent()) {
+                found.put(id, cached.get());
+            } else {
+                toLoad.add(id);
+            }
+        }
+        int chunkSize = Math.max(1, config.getChunkSize());
+        for (int from = 0; from < toLoad.size(); from += chunkSize) {
+            List<Long> chunk = toLoad.subList(from, Math.min(from + chunkSize, toLoad.size()));
+            for (BankProductView view : repository.findViewsByIdIn(chunk)) {
+                found.put(view.getId(), view);
+            }
+        }
+
+        // The database returns rows in any order: rebuild the requested order
+        List<BankProductView> items = new ArrayList<>(found.size());
+        List<Long> missing = new ArrayList<>();
+        for (Long id : requested) {
+            BankProductView view = found.get(id);
+            if (view != null) {
+                items.add(view);
+            } else {
+                missing.add(id);
+            }
+        }
+        return new BulkLookupResult(items, missing);
+    }
+
+    // VERSION (by ID): for conditional requests, answered from the cache or a version-only query
+    public Optional<Long> getProductVersion(Long id) {
+        Optional<BankProductView> cached = cache.peek(id);
+        if (cached.isPresent()) {
+            return Optional.ofNullable(cached.get().getVersion());
+        }
+        return repository.findVersionById(id);
     }
 
     // READ (all)
-    public List<BankProduct> getAllProducts() {
-        return repository.findAll();
+    @Transactional(readOnly = true)
+    public List<BankProductView> getAllProducts() {
+        return repository.findAllViews();
+    }
+
+    // READ (all) for a conditional request: 'reader' gets the catalog version (changes whenever any product is created,
+    // updated or deleted) and loads the products only if it needs them.
+    // Both are read in one read-only transaction, so on one connection (the primary or a single replica):
+    // the ETag built from the version always describes the list, also while a replica is behind
+    @Transactional(readOnly = true)
+    public <T> T readCatalog(BiFunction<CatalogVersion, Supplier<List<BankProductView>>, T> reader) {
+        return reader.apply(repository.findCatalogVersion(), repository::findAllViews);
     }
 
-    // UPDATE
+    // READ (cursor page)
+    @Transactional(readOnly = true)
+    public CursorPage<BankProductView> getProductsPage(Long after, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        long cursor = after == null ? 0L : after;
+
+        // Fetch one extra row to know if there is a next page without running a COUNT query
+        List<BankProductView> rows = repository.findViewsAfter(cursor, PageRequest.of(0, pageSize + 1));
+        if (rows.size() <= pageSize) {
+            return new CursorPage<>(rows, null);
+        }
+        List<BankProductView> items = rows.subList(0, pageSize);
+        return new CursorPage<>(items, items.get(pageSize - 1).getId());
+    }
+
+    // SEARCH (case-insensitive title match, cursor page of id + title)
+    // Throws IllegalArgumentException for a blank term, or a substring term shorter than MIN_SUBSTRING_LENGTH
+    @Transactional(readOnly = true)
+    public CursorPage<BankProductSummary> searchProducts(String query, SearchMatch match, Long after, int limit) {
+        String term = query == null ? "" : query.trim().toLowerCase(Locale.ROOT);
+        if (term.isEmpty()) {
+            throw new IllegalArgumentException("Search term must not be blank");
+        }
+        if (match == SearchMatch.SUBSTRING && term.length() < MIN_SUBSTRING_LENGTH) {
+            throw new IllegalArgumentException("Substring search needs at least " + MIN_SUBSTRING_LENGTH + " characters");
+        }
+        String escaped = escapeLike(term);
+        String pattern = match == SearchMatch.PREFIX ? escaped + "%" : "%" + escaped + "%";
+
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        long cursor = after == null ? 0L : after;
+        PageRequest page = PageRequest.of(0, pageSize + 1);
+        SearchIndexInitializer indexes = searchIndexes.getIfAvailable();
+        List<BankProductSummary> rows = indexes != null && indexes.usesTitleLowerColumn()
+                ? repository.searchByTitleLower(pattern, cursor, page)
+                : repository.searchByTitle(pattern, cursor, page);
+        if (rows.size() <= pageSize) {
+            return new CursorPage<>(rows, null);
+        }
+        List<BankProductSummary> items = rows.subList(0, pageSize);
+        return new CursorPage<>(items, items.get(pageSize - 1).getId());
+    }
+
+    // The search term is matched literally: '%', '_' and the escape character itself lose their LIKE meaning
+    static String escapeLike(String term) {
+        return term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    // EXPORT (all, as NDJSON: one JSON object per line)
+    // Rows are written as they are read, so memory use does not depend on the table size
+    @Transactional(readOnly = true)
+    public long exportProducts(OutputStream out) throws IOException {
+        ObjectWriter writer = objectMapper.writerFor(BankProductView.class)
+                .withRootValueSeparator("\n")
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        long count = 0;
+        try (Stream<BankProductView> products = repository.streamAllViews();
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            // 'out' belongs to the caller (servlet response), closing the generator must not close it
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // Views are not managed, the persistence context stays empty however many rows are written
+            Iterator<BankProductView> iterator = products.iterator();
+            while (iterator.hasNext()) {
+                writer.writeValue(generator, iterator.next());
+                count++;
+            }
+            if (count > 0) {
+                generator.writeRaw('\n');
+            }
+        }
+        return count;
+    }
+
+    // UPDATE (single UPDATE statement, then the new version by primary key)
+    @Transactional
     public Optional<BankProduct> updateProduct(Long id, BankProduct updatedProduct) {
-        return repository.findById(id)
-                .map(existing -> {
-                    existing.setTitle(updatedProduct.getTitle());
-                    return repository.save(existing);
-                });
+        int updatedRows = repository.updateTitleById(id, updatedProduct.getTitle());
+        // After the commit, never before it
+        cache.invalidateAfterTransaction(id);
+        if (updatedRows == 0) {
+            return Optional.empty();
+        }
+        // The UPDATE holds the row lock until the commit: the version read in this transaction is the one it wrote
+        Long version = repository.findVersionById(id).orElse(null);
+        outbox.recordUpdated(id, updatedProduct.getTitle(), version);
+        BankProduct updated = new BankProduct(updatedProduct.getTitle());
+        updated.setId(id);
+        updated.setVersion(version);
+        return Optional.of(updated);
+    }
+
+    // UPDATE (optimistic locking): only if the product is still at 'expectedVersion'
+    // Throws OptimisticLockingFailureException if it was changed, deleted or never existed
+    @Transactional
+    public BankProduct updateProduct(Long id, BankProduct updatedProduct, long expectedVersion) {
+        int updatedRows = repository.updateTitleByIdAndVersion(id, updatedProduct.getTitle(), expectedVersion);
+        cache.invalidateAfterTransaction(id);
+        if (updatedRows == 0) {
+            throw new OptimisticLockingFailureException("BankProduct " + id + " is not at version " + expectedVersion);
+        }
+        outbox.recordUpdated(id, updatedProduct.getTitle(), expectedVersion + 1);
+        BankProduct updated = new BankProduct(updatedProduct.getTitle());
+        updated.setId(id);
+        updated.setVersion(expectedVersion + 1);
+        return updated;
     }
 
-    // DELETE (by ID)
+    // DELETE (by ID, single DELETE statement)
+    @Transactional
     public boolean deleteProduct(Long id) {
-        Optional<BankProduct> productOptional = repository.findById(id);
-        if (productOptional.isPresent()) {
-            repository.deleteById(id);
-            return true;
-        } else {
-            return false;
+        boolean deleted = repository.deleteProductById(id) > 0;
+        cache.invalidateAfterTransaction(id);
+        if (deleted) {
+            outbox.recordDeleted(id);
         }
+        return deleted;
     }
 }
@@ -0,0 +1,191 @@
+package net.projectsync.karatedemo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import net.projectsync.karatedemo.config.BankProductProperties;
+import net.projectsync.karatedemo.model.BankProduct;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Write-behind for POST /api/v1/bankproducts (bankproducts.ingest.mode=write-behind).
+ * Requests put their product into a bounded queue (array ring buffer) and wait for its future, one writer thread
+ * takes whatever is queued, up to 'max-batch-size', and writes it in one transaction with batched INSERTs.
+ * Under load the batches fill up by themselves, a single request is written without waiting for others.
+ *
+ * - back-pressure: a full queue rejects the create (429), instead of holding a request per queued product
+ * - one failing batch is retried product by product, so only the products that fail themselves get the error
+ * - on shutdown no new products are accepted and the queued ones are still written
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "bankproducts.ingest.mode", havingValue = "write-behind")
+public class BankProductWriteBehindQueue {
+
+    private static final long POLL_MILLIS = 100;
+
+    private final BankProductBatchService batchService;
+    private final BlockingQueue<Pending> queue;
+    private final int maxBatchSize;
+    private final long enqueueTimeoutNanos;
+    private final Duration responseTimeout;
+    private final Thread writer;
+    private volatile boolean running = true;
+    // Set once the final drain is done: whatever a racing submit() still queues is rejected, never left waiting
+    private volatile boolean closed;
+
+    public BankProductWriteBehindQueue(BankProductBatchService batchService, BankProductProperties properties) {
+        this(batchService, properties.getIngest());
+        writer.start();
+    }
+
+    // Not started, for tests
+    BankProductWriteBehindQueue(BankProductBatchService batchService, BankProductProperties.Ingest ingest) {
+        this.batchService = batchService;
+        this.queue = new ArrayBlockingQueue<>(ingest.getCapacity());
+        this.maxBatchSize = ingest.getMaxBatchSize();
+        this.enqueueTimeoutNanos = ingest.getEnqueueTimeout().toNanos();
+        this.responseTimeout = ingest.getResponseTimeout();
+        this.writer = new Thread(this::run, "bankproducts-write-behind");
+    }
+
+    // CREATE (write-behind): queues the product, the future completes with the stored product (generated id, version 0)
+    // Throws WriteBehindRejectedException(FULL) when the queue is still full after 'enqueue-timeout'
+    public CompletableFuture<BankProduct> submit(BankProduct product) {
+        // Always new rows: ids are generated, versions start at 0
+        product.setId(null);
+        product.setVersion(null);
+        Pending pending = new Pending(product);
+        if (!running || !offer(pending)) {
+            throw new WriteBehindRejectedException(WriteBehindRejectedException.Reason.FULL,
+                    "write-behind queue is full");
+        }
+        // Passed the 'running' check before close() but queued after the final drain: take it back out.
+        // If rejectLeftovers() got to it first, its future is already failed
+        if (closed && queue.remove(pending)) {
+            throw closedException();
+        }
+        return pending.future;
+    }
+
+    // CREATE (write-behind), waiting up to 'response-timeout' for the product to be written
+    public BankProduct create(BankProduct product) {
+        CompletableFuture<BankProduct> future = submit(product);
+        try {
+            return future.get(responseTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new WriteBehindRejectedException(WriteBehindRejectedException.Reason.TIMEOUT,
+                    "product not written within " + responseTimeout, future);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for the write", e);
+        }
+    }
+
+    // Products waiting to be written, for tests and diagnostics
+    int size() {
+        return queue.size();
+    }
+
+    // Stops accepting products, writes the queued ones and stops the writer
+    @PreDestroy
+    public void close() throws InterruptedException {
+        running = false;
+        if (writer.isAlive()) {
+            writer.join();
+        } else {
+            drain();
+            rejectLeftovers();
+        }
+    }
+
+    private boolean offer(Pending pending) {
+        try {
+            return queue.offer(pending, enqueueTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                Pending first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    List<Pending> batch = new ArrayList<>(maxBatchSize);
+                    batch.add(first);
+                    queue.drainTo(batch, maxBatchSize - 1);
+                    write(batch);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drain();
+        rejectLeftovers();
+    }
+
+    // Writes what is still queued, in batches
+    private void drain() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        while (queue.drainTo(batch, maxBatchSize) > 0) {
+            write(batch);
+            batch = new ArrayList<>(maxBatchSize);
+        }
+    }
+
+    // After the final drain: fails what submit() queued while the queue was closing
+    private void rejectLeftovers() {
+        closed = true;
+        List<Pending> leftovers = new ArrayList<>();
+        queue.drainTo(leftovers);
+        leftovers.forEach(pending -> pending.future.completeExceptionally(closedException()));
+    }
+
+    private static WriteBehindRejectedException closedException() {
+        return new WriteBehindRejectedException(WriteBehindRejectedException.Reason.FULL, "write-behind queue is closed");
+    }
+
+    private void write(List<Pending> batch) {
+        List<BankProduct> products = new ArrayList<>(batch.size());
+        batch.forEach(pending -> products.add(pending.product));
+        try {
+            batchService.saveAll(products);
+            batch.forEach(pending -> pending.future.complete(pending.product));
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.get(0).future.completeExceptionally(e);
+                return;
+            }
+            log.warn("Write-behind batch of {} products failed, writing them one by one: {}", batch.size(), e.getMessage());
+            for (Pending pending : batch) {
+                // The rolled back batch may have assigned ids already
+                pending.product.setId(null);
+                pending.product.setVersion(null);
+                write(List.of(pending));
+            }
+        }
+    }
+
+    private static final class Pending {
+
+        private final BankProduct product;
+        private final CompletableFuture<BankProduct> future = new CompletableFuture<>();
+
+        private Pending(BankProduct product) {
+            this.product = product;
+        }
+    }
+}
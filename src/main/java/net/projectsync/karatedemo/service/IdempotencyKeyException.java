@@ -0,0 +1,23 @@
+package net.projectsync.karatedemo.service;
+
+import lombok.Getter;
+
+/**
+ * A request with an Idempotency-Key that can neither be executed nor replayed.
+ * - INVALID     -> blank key or longer than 255 characters: 400
+ * - MISMATCH    -> the key was used before for a different request (method, path or body): 422
+ * - IN_PROGRESS -> the first request with the key is still running (on another node, or past 'wait-timeout'): 409,
+ *                  the client retries later
+ */
+@Getter
+public class IdempotencyKeyException extends RuntimeException {
+
+    public enum Reason { INVALID, MISMATCH, IN_PROGRESS }
+
+    private final Reason reason;
+
+    public IdempotencyKeyException(Reason reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+}
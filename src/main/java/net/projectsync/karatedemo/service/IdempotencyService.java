@@ -0,0 +1,221 @@
+package net.projectsync.karatedemo.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import net.projectsync.karatedemo.config.BankProductProperties;
+import net.projectsync.karatedemo.model.IdempotencyRecord;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Executes a request with an Idempotency-Key at most once, repeated requests get the stored response.
+ * - the first request reserves the key in the store, runs and stores its response (status, Location, ETag, body)
+ * - a duplicate arriving while the first one runs on this node waits for it ('wait-timeout') and gets its response
+ * - later duplicates are answered from the store, without touching the product repository (header Idempotent-Replayed)
+ * - a key is bound to its request (SHA-256 of method, path, headers and body): reused for another request -> 422
+ * - 5xx responses and exceptions are not stored, the key is released and the client's retry executes again.
+ *   Except for a DeferredResponse (write-behind create that timed out but is still queued): the key stays reserved
+ *   and gets the response once the write is done, retries meanwhile get 409
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+
+    // Exception of a request that failed for the client but whose effect still takes place later
+    public interface DeferredResponse {
+
+        // Completes with the response the request would have had, null when nothing takes place later
+        CompletableFuture<? extends ResponseEntity<?>> getDeferredResponse();
+    }
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyStore store;
+    private final ObjectMapper objectMapper;
+    private final BankProductProperties.Idempotency config;
+    // Requests in progress on this node, duplicates wait for their response (null when the request failed)
+    private final ConcurrentMap<String, CompletableFuture<IdempotencyRecord>> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyService(IdempotencyStore store, ObjectMapper objectMapper, BankProductProperties properties) {
+        this.store = store;
+        this.objectMapper = objectMapper;
+        this.config = properties.getIdempotency();
+    }
+
+    /**
+     * @param request  method, path and any header that changes the outcome (If-Match), e.g. "PUT /api/v1/bankproducts/1"
+     * @param body     request body, part of the fingerprint
+     * @param bodyType type of the response body, to replay it
+     * @param action   executes the request
+     */
+    public <T> ResponseEntity<T> execute(String key, String request, Object body, Class<T> bodyType,
+                                         Supplier<ResponseEntity<T>> action) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IdempotencyKeyException(IdempotencyKeyException.Reason.INVALID, "Invalid " + HEADER);
+        }
+        String fingerprint = fingerprint(request, body);
+        while (true) {
+            Optional<IdempotencyRecord> existing = store.find(key);
+            if (existing.isPresent() && existing.get().isCompleted()) {
+                return replay(existing.get(), fingerprint, bodyType);
+            }
+            CompletableFuture<IdempotencyRecord> running = inFlight.get(key);
+            if (running != null) {
+                IdempotencyRecord record = await(running);
+                if (record != null) {
+                    return replay(record, fingerprint, bodyType);
+                }
+                continue; // the first request failed, this one may execute
+            }
+            if (existing.isPresent()) {
+                // Reserved by another node, unless a request of this node has completed in the meantime
+                Optional<IdempotencyRecord> current = store.find(key);
+                if (current.isPresent() && !current.get().isCompleted()) {
+                    throw new IdempotencyKeyException(IdempotencyKeyException.Reason.IN_PROGRESS, "Request in progress");
+                }
+                continue;
+            }
+            CompletableFuture<IdempotencyRecord> mine = new CompletableFuture<>();
+            if (inFlight.putIfAbsent(key, mine) != null) {
+                continue;
+            }
+            try {
+                if (!store.reserve(new IdempotencyRecord(key, fingerprint, Instant.now()))) {
+                    mine.complete(null);
+                    continue; // completed or reserved since find(), decided on the next pass
+                }
+                return executeReserved(key, fingerprint, action, mine);
+            } finally {
+                inFlight.remove(key, mine);
+            }
+        }
+    }
+
+    // Requests in progress on this node, for tests and diagnostics
+    int inFlight() {
+        return inFlight.size();
+    }
+
+    private <T> ResponseEntity<T> executeReserved(String key, String fingerprint, Supplier<ResponseEntity<T>> action,
+                                                  CompletableFuture<IdempotencyRecord> mine) {
+        IdempotencyRecord record = null;
+        boolean deferred = false;
+        try {
+            ResponseEntity<T> response = action.get();
+            record = completeOrRelease(key, fingerprint, response);
+            return response;
+        } catch (RuntimeException e) {
+            CompletableFuture<? extends ResponseEntity<?>> later = e instanceof DeferredResponse
+                    ? ((DeferredResponse) e).getDeferredResponse()
+                    : null;
+            if (later != null) {
+                deferred = true;
+                later.whenComplete((response, error) -> {
+                    if (error != null) {
+                        store.release(key);
+                    } else {
+                        completeOrRelease(key, fingerprint, response);
+                    }
+                });
+            } else {
+                store.release(key);
+            }
+            throw e;
+        } finally {
+            // Waiting duplicates of a deferred request get 409 (still reserved), like later retries
+            mine.complete(deferred ? null : record);
+        }
+    }
+
+    // Stores the response, or releases the key for a 5xx. Returns the stored record, null when released
+    private IdempotencyRecord completeOrRelease(String key, String fingerprint, ResponseEntity<?> response) {
+        if (response.getStatusCode().is5xxServerError()) {
+            store.release(key);
+            return null;
+        }
+        IdempotencyRecord record = toRecord(key, fingerprint, response);
+        store.complete(record);
+        return record;
+    }
+
+    private IdempotencyRecord await(CompletableFuture<IdempotencyRecord> running) {
+        try {
+            return running.get(config.getWaitTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IdempotencyKeyException(IdempotencyKeyException.Reason.IN_PROGRESS, "Request still in progress");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyKeyException(IdempotencyKeyException.Reason.IN_PROGRESS, "Interrupted");
+        } catch (ExecutionException e) {
+            return null; // never completed exceptionally
+        }
+    }
+
+    private <T> ResponseEntity<T> replay(IdempotencyRecord record, String fingerprint, Class<T> bodyType) {
+        if (!record.getFingerprint().equals(fingerprint)) {
+            throw new IdempotencyKeyException(IdempotencyKeyException.Reason.MISMATCH,
+                    HEADER + " was used for a different request");
+        }
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(record.getStatus()).header(REPLAYED_HEADER, "true");
+        if (record.getLocation() != null) {
+            builder.header(HttpHeaders.LOCATION, record.getLocation());
+        }
+        if (record.getEtag() != null) {
+            builder.header(HttpHeaders.ETAG, record.getEtag());
+        }
+        try {
+            return builder.body(record.getBody() == null ? null : objectMapper.readValue(record.getBody(), bodyType));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored response of " + HEADER + " not readable", e);
+        }
+    }
+
+    private IdempotencyRecord toRecord(String key, String fingerprint, ResponseEntity<?> response) {
+        IdempotencyRecord record = new IdempotencyRecord(key, fingerprint, Instant.now());
+        record.setStatus(response.getStatusCodeValue());
+        record.setLocation(response.getHeaders().getFirst(HttpHeaders.LOCATION));
+        record.setEtag(response.getHeaders().getETag());
+        record.setBody(response.getBody() == null ? null : toJson(response.getBody()));
+        return record;
+    }
+
+    private String fingerprint(String request, Object body) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(request.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(toJson(body).getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // SHA-256 is required on every JVM
+        }
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package net.projectsync.karatedemo.service;
+
+import net.projectsync.karatedemo.model.IdempotencyRecord;
+import java.util.Optional;
+
+/**
+ * Keeps the responses of requests with an Idempotency-Key (see IdempotencyService).
+ * Implementations: InMemoryIdempotencyStore (default), JpaIdempotencyStore
+ */
+public interface IdempotencyStore {
+
+    // Record of the key, completed or still in progress. Empty when unknown or expired
+    Optional<IdempotencyRecord> find(String key);
+
+    // Marks the key as in progress. False when a record of the key exists already
+    boolean reserve(IdempotencyRecord pending);
+
+    // Stores the response of a reserved key
+    void complete(IdempotencyRecord record);
+
+    // Drops a reserved key whose request failed, so that it can be retried
+    void release(String key);
+}
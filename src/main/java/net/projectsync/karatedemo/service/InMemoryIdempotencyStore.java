@@ -0,0 +1,48 @@
+package net.projectsync.karatedemo.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import net.projectsync.karatedemo.config.BankProductProperties;
+import net.projectsync.karatedemo.model.IdempotencyRecord;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import java.util.Optional;
+
+/**
+ * Idempotency records of this node only, bounded ('maximum-size') and evicted after 'ttl'.
+ * A retry that reaches another node is executed again: use the JPA store behind a load balancer without affinity
+ */
+@Component
+@ConditionalOnProperty(name = "bankproducts.idempotency.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    private final Cache<String, IdempotencyRecord> records;
+
+    public InMemoryIdempotencyStore(BankProductProperties properties) {
+        BankProductProperties.Idempotency config = properties.getIdempotency();
+        this.records = Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .expireAfterWrite(config.getTtl())
+                .build();
+    }
+
+    @Override
+    public Optional<IdempotencyRecord> find(String key) {
+        return Optional.ofNullable(records.getIfPresent(key));
+    }
+
+    @Override
+    public boolean reserve(IdempotencyRecord pending) {
+        return records.asMap().putIfAbsent(pending.getIdempotencyKey(), pending) == null;
+    }
+
+    @Override
+    public void complete(IdempotencyRecord record) {
+        records.put(record.getIdempotencyKey(), record);
+    }
+
+    @Override
+    public void release(String key) {
+        records.invalidate(key);
+    }
+}
@@ -0,0 +1,121 @@
+package net.projectsync.karatedemo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import net.projectsync.karatedemo.config.BankProductProperties;
+import net.projectsync.karatedemo.model.IdempotencyRecord;
+import net.projectsync.karatedemo.repository.IdempotencyRecordRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Idempotency records in the table idempotency_record, shared by all nodes (bankproducts.idempotency.store=jpa).
+ * reserve() inserts the in-progress record: the primary key lets only one node execute a key,
+ * a duplicate on another node gets 409 until the first one has completed.
+ * Records older than 'ttl' are ignored and deleted every 'ttl' / 24
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "bankproducts.idempotency.store", havingValue = "jpa")
+public class JpaIdempotencyStore implements IdempotencyStore {
+
+    private final IdempotencyRecordRepository repository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration ttl;
+    private final Duration pendingTimeout;
+    private final ScheduledExecutorService scheduler;
+
+    public JpaIdempotencyStore(IdempotencyRecordRepository repository, EntityManager entityManager,
+                               PlatformTransactionManager transactionManager, BankProductProperties properties) {
+        this.repository = repository;
+        this.entityManager = entityManager;
+        // Own transaction: the record is committed before, and independently of, the request's own writes
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.ttl = properties.getIdempotency().getTtl();
+        this.pendingTimeout = properties.getIdempotency().getPendingTimeout();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "idempotency-prune");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long prune = Math.max(ttl.toMillis() / 24, 1000);
+        scheduler.scheduleWithFixedDelay(this::prune, prune, prune, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Optional<IdempotencyRecord> find(String key) {
+        return repository.findById(key).filter(record -> !isStale(record));
+    }
+
+    @Override
+    public boolean reserve(IdempotencyRecord pending) {
+        if (insert(pending)) {
+            return true;
+        }
+        // Taken over when the existing record has expired or was abandoned in progress
+        Optional<IdempotencyRecord> existing = repository.findById(pending.getIdempotencyKey());
+        if (existing.isPresent() && isStale(existing.get())) {
+            release(pending.getIdempotencyKey());
+            return insert(pending);
+        }
+        return false;
+    }
+
+    @Override
+    public void complete(IdempotencyRecord record) {
+        transactionTemplate.executeWithoutResult(status -> repository.save(record));
+    }
+
+    @Override
+    public void release(String key) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> repository.deleteById(key));
+        } catch (EmptyResultDataAccessException e) {
+            // released already
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    // persist(), not save(): save() would merge into an existing row instead of failing on the primary key
+    private boolean insert(IdempotencyRecord pending) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> entityManager.persist(pending));
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+    }
+
+    private boolean isStale(IdempotencyRecord record) {
+        Instant now = Instant.now();
+        return record.getCreatedAt().isBefore(now.minus(ttl))
+                || !record.isCompleted() && record.getCreatedAt().isBefore(now.minus(pendingTimeout));
+    }
+
+    private void prune() {
+        try {
+            int deleted = repository.deleteCreatedBefore(Instant.now().minus(ttl));
+            log.debug("Pruned {} idempotency records", deleted);
+        } catch (RuntimeException e) {
+            log.warn("Pruning the idempotency records failed: {}", e.getMessage());
+        }
+    }
+}
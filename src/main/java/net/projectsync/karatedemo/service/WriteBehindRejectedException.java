@@ -0,0 +1,42 @@
+package net.projectsync.karatedemo.service;
+
+import lombok.Getter;
+import net.projectsync.karatedemo.model.BankProduct;
+import org.springframework.http.ResponseEntity;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * A create was not accepted by, or not written in time by, the write-behind queue.
+ * - FULL     -> the queue is full (or shutting down), nothing was queued: 429, the client retries later
+ * - TIMEOUT  -> queued but not written within 'response-timeout': 503, the product may still be written.
+ *               'written' completes when it is, so the response of an Idempotency-Key can still be stored
+ */
+@Getter
+public class WriteBehindRejectedException extends RuntimeException implements IdempotencyService.DeferredResponse {
+
+    public enum Reason { FULL, TIMEOUT }
+
+    private final Reason reason;
+    // TIMEOUT only, null for FULL
+    private final CompletableFuture<BankProduct> written;
+    private CompletableFuture<? extends ResponseEntity<?>> deferredResponse;
+
+    public WriteBehindRejectedException(Reason reason, String message) {
+        this(reason, message, null);
+    }
+
+    public WriteBehindRejectedException(Reason reason, String message, CompletableFuture<BankProduct> written) {
+        super(message);
+        this.reason = reason;
+        this.written = written;
+    }
+
+    // The response the request would have had, once the queued product is written (nothing when it was not queued)
+    public WriteBehindRejectedException respondWhenWritten(Function<BankProduct, ? extends ResponseEntity<?>> response) {
+        if (written != null) {
+            deferredResponse = written.thenApply(response);
+        }
+        return this;
+    }
+}
@@ -0,0 +1,38 @@
+-- Schema of BankProduct, for ddl-auto=validate (profile 'fast-start'): Hibernate no longer creates or updates it
+-- bank_product: same DDL as reactive/src/main/resources/db/bank_product.sql
+-- On a table that already holds rows, move the sequence past them (what IdSequenceInitializer does on a normal start):
+--   SELECT setval('bank_product_seq', (SELECT (max(id) + 49) / 50 * 50 FROM bank_product));
+CREATE SEQUENCE IF NOT EXISTS bank_product_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS bank_product (
+    id      BIGINT PRIMARY KEY,
+    title   VARCHAR(255),
+    version BIGINT
+);
+
+-- Outbox of the change feed (BankProductChange)
+CREATE SEQUENCE IF NOT EXISTS bank_product_change_seq START WITH 1 INCREMENT BY 1;
+
+CREATE TABLE IF NOT EXISTS bank_product_change (
+    seq         BIGINT PRIMARY KEY,
+    product_id  BIGINT NOT NULL,
+    type        VARCHAR(16) NOT NULL,
+    title       VARCHAR(255),
+    version     BIGINT,
+    recorded_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS bank_product_change_recorded_at ON bank_product_change (recorded_at);
+
+-- Responses of requests with an Idempotency-Key (IdempotencyRecord), used with bankproducts.idempotency.store=jpa
+CREATE TABLE IF NOT EXISTS idempotency_record (
+    idempotency_key VARCHAR(255) PRIMARY KEY,
+    fingerprint     VARCHAR(64) NOT NULL,
+    status          INTEGER,
+    location        VARCHAR(255),
+    etag            VARCHAR(255),
+    body            VARCHAR(10000),
+    created_at      TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idempotency_record_created_at ON idempotency_record (created_at);
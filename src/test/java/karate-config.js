@@ -1,6 +1,7 @@
 function fn() {
     var config = {
-        baseUrl: 'http://localhost:8080'
+        // -DbaseUrl=... points the tests to another instance, e.g. one booted in-process on a random port
+        baseUrl: karate.properties['baseUrl'] || 'http://localhost:8080'
     };
     return config;
 }
\ No newline at end of file
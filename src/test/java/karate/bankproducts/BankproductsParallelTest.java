@@ -0,0 +1,81 @@
+package karate.bankproducts;
+
+import com.intuit.karate.Results;
+import com.intuit.karate.Runner;
+import com.intuit.karate.core.ScenarioResult;
+import net.projectsync.karatedemo.KarateDemoApplication;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs all bankproducts features in parallel against the app booted in-process on H2 (profile 'h2').
+ *
+ * Reports (build/karate-reports):
+ * - karate-summary.html   -> aggregated result with the duration of every scenario
+ * - karate-timeline.html  -> which scenario ran on which thread, and when
+ * - scenario-timings.txt  -> scenarios sorted by duration, slowest first
+ */
+@SpringBootTest(classes = KarateDemoApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("h2")
+class BankproductsParallelTest {
+
+    private static final int THREADS = Integer.getInteger("karate.threads", 5);
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    void testParallel() throws IOException {
+        String baseUrl = "http://localhost:" + port;
+        System.setProperty("baseUrl", baseUrl); // read by karate-config.js
+        CreatedProducts createdProducts = new CreatedProducts();
+        try {
+            Results results = Runner.path("classpath:karate/bankproducts")
+                    .hook(createdProducts)
+                    .outputCucumberJson(true)
+                    .outputJunitXml(true)
+                    .parallel(THREADS);
+
+            writeScenarioTimings(results);
+            deleteCreatedProducts(baseUrl, createdProducts);
+
+            assertEquals(0, results.getFailCount(), results.getErrorMessages());
+        } finally {
+            System.clearProperty("baseUrl");
+        }
+    }
+
+    private void writeScenarioTimings(Results results) throws IOException {
+        String timings = results.getScenarioResults()
+                .sorted(Comparator.comparingDouble(ScenarioResult::getDurationMillis).reversed())
+                .map(r -> String.format("%8.1f ms  %-10s %s %s", r.getDurationMillis(), r.getExecutorName(),
+                        r.getScenario().getRefIdAndName(), r.isFailed() ? "FAILED" : ""))
+                .collect(Collectors.joining(System.lineSeparator()));
+        Files.writeString(Path.of(results.getReportDir(), "scenario-timings.txt"), timings);
+    }
+
+    // Cleanup in one batch after the run: all tracked ids are deleted concurrently (already deleted ids answer 404)
+    private void deleteCreatedProducts(String baseUrl, CreatedProducts createdProducts) {
+        HttpClient client = HttpClient.newHttpClient();
+        Set<Long> ids = createdProducts.drain();
+        CompletableFuture.allOf(ids.stream()
+                .map(id -> HttpRequest.newBuilder(URI.create(baseUrl + "/api/v1/bankproducts/" + id)).DELETE().build())
+                .map(request -> client.sendAsync(request, HttpResponse.BodyHandlers.discarding()))
+                .toArray(CompletableFuture[]::new))
+                .join();
+    }
+}
@@ -0,0 +1,35 @@
+package karate.bankproducts;
+
+import com.intuit.karate.RuntimeHook;
+import com.intuit.karate.core.ScenarioRuntime;
+import com.intuit.karate.core.Variable;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ids of the products created by the feature scenarios ('productId'), for one run of BankproductsParallelTest.
+ * Every scenario works only on the product it created itself, so scenarios running in parallel never
+ * touch each other's data. The ids are collected here and deleted in one go after the run.
+ *
+ * Registered as a hook of that runner only: other runs of the features (BankproductsRunner, Gatling)
+ * track nothing, and the ids go away with the run instead of piling up in a static map.
+ */
+final class CreatedProducts implements RuntimeHook {
+
+    private final Set<Long> ids = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void afterScenario(ScenarioRuntime sr) {
+        Variable id = sr.engine.vars.get("productId");
+        if (id != null && id.getValue() instanceof Number) {
+            ids.add(((Number) id.getValue()).longValue());
+        }
+    }
+
+    // Returns the ids tracked so far and forgets them
+    Set<Long> drain() {
+        Set<Long> drained = Set.copyOf(ids);
+        ids.removeAll(drained);
+        return drained;
+    }
+}
@@ -2,14 +2,17 @@ Feature: CRUD tests for bankproducts API
 
   # Spring Boot application must be running before executing API tests (http://localhost:8080)
   # API tests updates values in DB used by the application
+  # Tags (@create, @read, @update, @delete) select scenarios for the load profiles of BankProductsSimulation
   Background:
     * url baseUrl
     * header Content-Type = 'application/json'
     * header Accept = 'application/json'
+    # 'productId' is the product created by the scenario: BankproductsParallelTest deletes them after the run (CreatedProducts)
 
   # ----------------------------
   # CREATE
   # ----------------------------
+  @create
   Scenario: Create a new bank product
     * def sampleProduct = { "title": "My product" }
     * param notify = true
@@ -18,10 +21,12 @@ Feature: CRUD tests for bankproducts API
     When method POST
     Then status 201
     And match response.title == 'My product'
+    * def productId = response.id
 
   # ----------------------------
   # READ (GET by ID)
   # ----------------------------
+  @read
   Scenario: Get a bank product by ID
     * def sampleProduct = read('data/sampleProduct.json')
     * params { title: 'My product', type: 'Savings' }
@@ -43,6 +48,7 @@ Feature: CRUD tests for bankproducts API
   # ----------------------------
   # READ (GET by invalid ID)
   # ----------------------------
+  @read
   Scenario: Get a bank product by invalid ID
     * def sampleProduct = read('data/sampleProduct.json')
     # Create product for this scenario
@@ -61,6 +67,7 @@ Feature: CRUD tests for bankproducts API
   # ----------------------------
   # UPDATE
   # ----------------------------
+  @update
   Scenario: Update a bank product
     * def sampleProduct = read('data/sampleProduct.json')
     # Create product for this scenario
@@ -82,6 +89,7 @@ Feature: CRUD tests for bankproducts API
   # ----------------------------
   # DELETE
   # ----------------------------
+  @delete
   Scenario: Delete a bank product
     * def sampleProduct = read('data/sampleProduct.json')
     # Create product for this scenario
@@ -0,0 +1,39 @@
+package net.projectsync.karatedemo.config;
+
+import net.projectsync.karatedemo.model.BankProduct;
+import net.projectsync.karatedemo.service.BankProductService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Profile 'fast-start' on H2: the schema comes from db/bank_product.sql and Hibernate only validates it,
+ * the JPA beans are created on first use
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles({"h2", "fast-start"})
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:fast-start;DB_CLOSE_DELAY=-1",
+        "spring.sql.init.mode=always",
+        "spring.sql.init.schema-locations=classpath:db/bank_product.sql"
+})
+class FastStartProfileIT {
+
+    @Autowired
+    private ConfigurableApplicationContext context;
+
+    @Test
+    void testServiceIsCreatedOnFirstUseAndSchemaValidates() {
+        assertThat(context.getEnvironment().getProperty("spring.jpa.hibernate.ddl-auto")).isEqualTo("validate");
+        assertThat(context.getBeanFactory().containsSingleton("bankProductService")).isFalse();
+
+        BankProductService service = context.getBean(BankProductService.class);
+        Long id = service.createProduct(new BankProduct("Savings Account")).getId();
+
+        assertThat(service.getProductById(id)).hasValueSatisfying(p -> assertThat(p.getTitle()).isEqualTo("Savings Account"));
+    }
+}
@@ -0,0 +1,84 @@
+package net.projectsync.karatedemo.config;
+
+import net.projectsync.karatedemo.model.BankProduct;
+import net.projectsync.karatedemo.service.BankProductService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A database created while ids came from IDENTITY: the table holds rows and has no sequence when the app starts
+ * with ddl-auto=update, which creates bank_product_seq starting at 1
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles("h2")
+class IdSequenceInitializerIT {
+
+    private static final String URL = "jdbc:h2:mem:existing-rows;DB_CLOSE_DELAY=-1";
+    private static final long EXISTING_ROWS = 120;
+
+    // Runs before the context is created, so the rows are there when Hibernate and the initializer start
+    @DynamicPropertySource
+    static void existingDatabase(DynamicPropertyRegistry registry) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(URL, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("create table if not exists bank_product "
+                    + "(id bigint generated by default as identity primary key, title varchar(255), version bigint)");
+            statement.execute("insert into bank_product (title, version) "
+                    + "select 'Existing ' || x, 0 from system_range(1, " + EXISTING_ROWS + ")");
+        }
+        registry.add("spring.datasource.url", () -> URL);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "update");
+    }
+
+    @Autowired
+    private BankProductService service;
+
+    @Autowired
+    private IdSequenceInitializer initializer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testNewIdsStartAfterTheExistingRows() {
+        // More than one block of ids, none of them taken by an existing row
+        for (int i = 0; i < BankProduct.ID_ALLOCATION_SIZE + 10; i++) {
+            Long id = service.createProduct(new BankProduct("New " + i)).getId();
+            assertThat(id).isGreaterThan(EXISTING_ROWS);
+        }
+
+        assertThat(jdbcTemplate.queryForObject("select count(*) from bank_product where title like 'Existing %'", Long.class))
+                .isEqualTo(EXISTING_ROWS);
+    }
+
+    @Test
+    void testSequenceAheadOfTheRowsIsLeftAlone() {
+        Long before = nextSequenceValue();
+
+        initializer.afterPropertiesSet();
+
+        assertThat(nextSequenceValue()).isEqualTo(before);
+    }
+
+    @Test
+    void testRoundUpToTheAllocationSize() {
+        assertThat(IdSequenceInitializer.roundUp(1)).isEqualTo(50);
+        assertThat(IdSequenceInitializer.roundUp(50)).isEqualTo(50);
+        assertThat(IdSequenceInitializer.roundUp(120)).isEqualTo(150);
+    }
+
+    private Long nextSequenceValue() {
+        return jdbcTemplate.queryForObject(
+                "select base_value from information_schema.sequences where lower(sequence_name) = 'bank_product_seq'", Long.class);
+    }
+}
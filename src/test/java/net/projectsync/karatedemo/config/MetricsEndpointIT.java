@@ -0,0 +1,51 @@
+package net.projectsync.karatedemo.config;
+
+import net.projectsync.karatedemo.model.BankProduct;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Boots the app on H2 (profile 'h2') and checks that every meter group shows up in the Prometheus scrape
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("h2")
+class MetricsEndpointIT {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    void testPrometheusScrape() {
+        BankProduct created = restTemplate.postForObject("/api/v1/bankproducts", new BankProduct("Fixed Deposit"), BankProduct.class);
+        restTemplate.getForEntity("/api/v1/bankproducts/" + created.getId(), BankProduct.class);
+        restTemplate.getForEntity("/api/v1/bankproducts/" + created.getId(), BankProduct.class);
+
+        ResponseEntity<String> response = restTemplate.getForEntity("/actuator/prometheus", String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody())
+                // controller methods, with histogram buckets and percentiles
+                .contains("http_server_requests_seconds_bucket{")
+                .contains("uri=\"/api/v1/bankproducts/{id}\"")
+                .contains("quantile=\"0.99\"")
+                // repository methods
+                .contains("spring_data_repository_invocations_seconds_bucket{")
+                .contains("method=\"save\"")
+                // connection pool
+                .contains("hikaricp_connections_active")
+                .contains("hikaricp_connections_idle")
+                .contains("hikaricp_connections_pending")
+                .contains("hikaricp_connections_acquire_seconds_bucket{")
+                // Hibernate statistics
+                .contains("hibernate_query_executions_total")
+                .contains("hibernate_entities_loads_total")
+                .contains("hibernate_flushes_total")
+                // product cache
+                .contains("cache_gets_total{")
+                .contains("cache=\"bankProducts\"");
+    }
+}
@@ -0,0 +1,183 @@
+package net.projectsync.karatedemo.config;
+
+import net.projectsync.karatedemo.model.BankProduct;
+import net.projectsync.karatedemo.service.BankProductService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import javax.servlet.http.Cookie;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two H2 databases stand in for primary and replica. Nothing replicates between them: the same product has
+ * a different title in each, so the title read back shows which database served the read.
+ * The replica's lag and replayed position are whatever its replica_lag and replica_position tables say,
+ * checked on refresh() and every lag-check-interval. The primary's write position is the last outbox seq.
+ * Clients are simulated request contexts that keep the cookies of their responses
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles("h2")
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1",
+        "bankproducts.read-replica.enabled=true",
+        "bankproducts.read-replica.urls[0]=" + ReadReplicaRoutingIT.REPLICA_URL,
+        "bankproducts.read-replica.max-lag=1s",
+        "bankproducts.read-replica.lag-check-interval=500ms",
+        "bankproducts.read-replica.lag-query=select seconds from replica_lag",
+        "bankproducts.read-replica.write-position-query=select coalesce(max(seq), 0) from bank_product_change",
+        "bankproducts.read-replica.replay-position-query=select position from replica_position",
+        "bankproducts.cache.enabled=false"
+})
+class ReadReplicaRoutingIT {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private BankProductService service;
+
+    @Autowired
+    private ReadReplicas readReplicas;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+    private Long id;
+
+    @BeforeEach
+    void setUp() {
+        id = service.createProduct(new BankProduct("Savings Account")).getId();
+        replica.execute("create table if not exists bank_product (id bigint primary key, title varchar(255), version bigint)");
+        replica.execute("create table if not exists replica_lag (seconds double)");
+        replica.execute("create table if not exists replica_position (position bigint)");
+        replica.update("merge into bank_product key (id) values (?, ?, 0)", id, "Savings Account (replica)");
+        jdbcTemplate.update("update bank_product set title = ? where id = ?", "Savings Account (primary)", id);
+    }
+
+    @Test
+    void testReadOnlyTransactionReadsFromReplica() {
+        setReplica(0, primaryPosition());
+
+        assertThat(readTitle()).isEqualTo("Savings Account (replica)");
+    }
+
+    @Test
+    void testWritesGoToPrimary() {
+        setReplica(0, primaryPosition());
+
+        service.updateProduct(id, new BankProduct("Fixed Deposit"));
+
+        assertThat(jdbcTemplate.queryForObject("select title from bank_product where id = ?", String.class, id))
+                .isEqualTo("Fixed Deposit");
+        assertThat(replica.queryForObject("select title from bank_product where id = ?", String.class, id))
+                .isEqualTo("Savings Account (replica)");
+    }
+
+    @Test
+    void testReadAfterWriteStaysOnPrimaryWhileReplicaMayBeBehind() {
+        // The replica replays writes 0.5s late: the writer's next read must not go there
+        setReplica(0.5, primaryPosition());
+        Client writer = new Client();
+
+        writer.request(() -> service.updateProduct(id, new BankProduct("Fixed Deposit")));
+
+        assertThat(writer.request(this::readTitle)).isEqualTo("Fixed Deposit");
+    }
+
+    @Test
+    void testReadAfterWriteStaysOnPrimaryUntilReplicaHasReplayedIt() {
+        // Lag 0 was measured before the write, the replica has not replayed it yet
+        setReplica(0, primaryPosition());
+        Client writer = new Client();
+
+        writer.request(() -> service.updateProduct(id, new BankProduct("Fixed Deposit")));
+
+        assertThat(writer.request(this::readTitle)).isEqualTo("Fixed Deposit");
+
+        // Once the replica has replayed the writer's position, its reads go back there
+        setReplica(0, primaryPosition());
+
+        assertThat(writer.request(this::readTitle)).isEqualTo("Savings Account (replica)");
+    }
+
+    @Test
+    void testOtherClientsReadFromReplicaWhileOneKeepsWriting() {
+        setReplica(0, primaryPosition());
+        Client writer = new Client();
+        Client reader = new Client();
+
+        for (int i = 0; i < 5; i++) {
+            String title = "Fixed Deposit " + i;
+            writer.request(() -> service.updateProduct(id, new BankProduct(title)));
+
+            assertThat(reader.request(this::readTitle)).isEqualTo("Savings Account (replica)");
+            assertThat(writer.request(this::readTitle)).isEqualTo(title);
+        }
+    }
+
+    @Test
+    void testReplicaTooFarBehindIsSkipped() {
+        setReplica(60, primaryPosition());
+
+        assertThat(readTitle()).isEqualTo("Savings Account (primary)");
+    }
+
+    @Test
+    void testUnavailableReplicaIsSkipped() {
+        replica.execute("drop table replica_lag");
+        readReplicas.refresh();
+
+        assertThat(readReplicas.lag(0)).isNull();
+        assertThat(readTitle()).isEqualTo("Savings Account (primary)");
+    }
+
+    private String readTitle() {
+        return service.getProductById(id).orElseThrow().getTitle();
+    }
+
+    private long primaryPosition() {
+        return jdbcTemplate.queryForObject("select coalesce(max(seq), 0) from bank_product_change", Long.class);
+    }
+
+    private void setReplica(double lagSeconds, long replayedPosition) {
+        replica.update("delete from replica_lag");
+        replica.update("insert into replica_lag values (?)", lagSeconds);
+        replica.update("delete from replica_position");
+        replica.update("insert into replica_position values (?)", replayedPosition);
+        readReplicas.refresh();
+    }
+
+    // A client across requests: sends the cookies its earlier responses have set, like a browser
+    private static class Client {
+
+        private final Map<String, Cookie> cookies = new HashMap<>();
+
+        <T> T request(Supplier<T> action) {
+            MockHttpServletRequest request = new MockHttpServletRequest();
+            request.setCookies(cookies.values().toArray(new Cookie[0]));
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, response));
+            try {
+                return action.get();
+            } finally {
+                RequestContextHolder.resetRequestAttributes();
+                for (Cookie cookie : response.getCookies()) {
+                    cookies.put(cookie.getName(), cookie);
+                }
+            }
+        }
+    }
+}
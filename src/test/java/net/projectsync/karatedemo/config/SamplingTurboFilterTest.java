@@ -0,0 +1,56 @@
+package net.projectsync.karatedemo.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.hibernate.engine.jdbc.spi.SqlStatementLogger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Statements logged through Hibernate's own SQL logger (JBoss Logging on top of Logback), as in profile 'perf'
+class SamplingTurboFilterTest {
+
+    private static final int STATEMENTS = 20_000;
+
+    private final LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+    private final Logger sqlLogger = context.getLogger("org.hibernate.SQL");
+    private final SamplingTurboFilter filter = new SamplingTurboFilter();
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+    private Level level;
+
+    @BeforeEach
+    void setUp() {
+        filter.setLoggerName("org.hibernate.SQL");
+        filter.setSampleEvery(10);
+        filter.start();
+        context.addTurboFilter(filter);
+        appender.start();
+        sqlLogger.addAppender(appender);
+        level = sqlLogger.getLevel();
+        sqlLogger.setLevel(Level.DEBUG);
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.getTurboFilterList().remove(filter);
+        sqlLogger.detachAppender(appender);
+        sqlLogger.setLevel(level);
+    }
+
+    @Test
+    void testOneInSampleEveryStatementsIsLogged() {
+        SqlStatementLogger statementLogger = new SqlStatementLogger(false, false, false, 0);
+
+        for (int i = 0; i < STATEMENTS; i++) {
+            statementLogger.logStatement("select p.id, p.title from bank_product p where p.id = " + i);
+        }
+
+        // Expected 2000 (1 in 10), sampling every level check would log about 200 (1 in 100)
+        assertThat(appender.list).hasSizeBetween(1_700, 2_300);
+    }
+}
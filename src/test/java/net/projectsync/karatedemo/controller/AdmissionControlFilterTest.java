@@ -0,0 +1,131 @@
+package net.projectsync.karatedemo.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import java.time.Duration;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdmissionControlFilterTest {
+
+    private final AdmissionControlFilter filter = new AdmissionControlFilter(1, Duration.ZERO, Duration.ofSeconds(2));
+
+    @Test
+    void testRequestWithinLimitIsProcessedAndReleasesPermit() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/v1/bankproducts/1"), response, chain);
+
+        assertThat(chain.getRequest()).isNotNull();
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(filter.availablePermits()).isEqualTo(1);
+    }
+
+    @Test
+    void testRequestPastLimitIsRejectedWith429() throws Exception {
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+
+        // The second request arrives while the first one still holds the only permit
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/v1/bankproducts/1"), new MockHttpServletResponse(),
+                (request, response) -> filter.doFilter(
+                        new MockHttpServletRequest("GET", "/api/v1/bankproducts/2"), rejected, new MockFilterChain()));
+
+        assertThat(rejected.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+        assertThat(rejected.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("2");
+        assertThat(filter.availablePermits()).isEqualTo(1);
+    }
+
+    @Test
+    void testAsyncRequestKeepsPermitUntilCompleted() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/bankproducts/export");
+        request.setAsyncSupported(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, (req, res) -> req.startAsync());
+
+        assertThat(filter.availablePermits()).isZero();
+
+        ((MockAsyncContext) request.getAsyncContext()).complete();
+
+        assertThat(filter.availablePermits()).isEqualTo(1);
+    }
+
+    @Test
+    void testExemptRequestIsNotCounted() throws Exception {
+        filter.setExempt(request -> request.getParameter("wait") != null);
+        MockHttpServletRequest longPoll = new MockHttpServletRequest("GET", "/api/v1/bankproducts/changes");
+        longPoll.setParameter("wait", "30");
+        MockFilterChain chain = new MockFilterChain();
+
+        // Passes even while another request holds the only permit
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/v1/bankproducts/1"), new MockHttpServletResponse(),
+                (request, response) -> filter.doFilter(longPoll, new MockHttpServletResponse(), chain));
+
+        assertThat(chain.getRequest()).isSameAs(longPoll);
+    }
+
+    @Test
+    void testRejectionsAreCounted() throws Exception {
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/v1/bankproducts/1"), new MockHttpServletResponse(),
+                (request, response) -> filter.doFilter(
+                        new MockHttpServletRequest("GET", "/api/v1/bankproducts/2"), new MockHttpServletResponse(), new MockFilterChain()));
+
+        assertThat(filter.rejected()).isEqualTo(1);
+    }
+
+    @Test
+    void testAdaptiveLimitShrinksOnSlowRequestsAndGrowsBack() throws Exception {
+        // Every request slower than 10ms halves the limit, down to 1
+        AdmissionControlFilter adaptive = new AdmissionControlFilter(
+                new AimdLimit(1, 4, Duration.ofMillis(10), 0.5), Duration.ZERO, Duration.ofSeconds(1));
+
+        adaptive.doFilter(new MockHttpServletRequest("GET", "/api/v1/bankproducts"), new MockHttpServletResponse(),
+                (request, response) -> sleep(30));
+
+        assertThat(adaptive.limit()).isEqualTo(2);
+        assertThat(adaptive.availablePermits()).isEqualTo(2);
+
+        adaptive.doFilter(new MockHttpServletRequest("GET", "/api/v1/bankproducts"), new MockHttpServletResponse(),
+                (request, response) -> sleep(30));
+
+        assertThat(adaptive.limit()).isEqualTo(1);
+
+        // Fast requests using the whole limit raise it again, one permit at a time
+        adaptive.doFilter(new MockHttpServletRequest("GET", "/api/v1/bankproducts/1"), new MockHttpServletResponse(), new MockFilterChain());
+
+        assertThat(adaptive.limit()).isEqualTo(2);
+        assertThat(adaptive.availablePermits()).isEqualTo(2);
+    }
+
+    @Test
+    void testRequestsThatAreNotSampledKeepTheAdaptiveLimit() throws Exception {
+        // A batch is slow by design: it must not be mistaken for overload
+        AdmissionControlFilter adaptive = new AdmissionControlFilter(
+                new AimdLimit(1, 4, Duration.ofMillis(10), 0.5), Duration.ZERO, Duration.ofSeconds(1));
+        adaptive.setSampled(request -> !request.getRequestURI().endsWith("/batch"));
+
+        adaptive.doFilter(new MockHttpServletRequest("POST", "/api/v1/bankproducts/batch"), new MockHttpServletResponse(),
+                (request, response) -> sleep(30));
+
+        assertThat(adaptive.limit()).isEqualTo(4);
+        assertThat(adaptive.availablePermits()).isEqualTo(4);
+
+        adaptive.doFilter(new MockHttpServletRequest("GET", "/api/v1/bankproducts/1"), new MockHttpServletResponse(),
+                (request, response) -> sleep(30));
+
+        assertThat(adaptive.limit()).isEqualTo(2);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
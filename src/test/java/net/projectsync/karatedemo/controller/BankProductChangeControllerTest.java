@@ -0,0 +1,93 @@
+package net.projectsync.karatedemo.controller;
+
+import net.projectsync.karatedemo.model.BankProductChange;
+import net.projectsync.karatedemo.model.ChangeFeedPage;
+import net.projectsync.karatedemo.service.BankProductChangeFeed;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Consumer;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(BankProductChangeController.class)
+class BankProductChangeControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private BankProductChangeFeed changeFeed;
+
+    private static ChangeFeedPage page(long since, BankProductChange... changes) {
+        return new ChangeFeedPage(List.of(changes), changes.length == 0 ? since : changes[changes.length - 1].getSeq());
+    }
+
+    private static BankProductChange created(long seq, long productId) {
+        BankProductChange change = new BankProductChange(productId, BankProductChange.Type.CREATED, "Savings Account", 0L, Instant.now());
+        change.setSeq(seq);
+        return change;
+    }
+
+    // CHANGES: GET /api/v1/bankproducts/changes?since=10
+    @Test
+    void testGetChanges() throws Exception {
+        Mockito.when(changeFeed.getChanges(10L, 100)).thenReturn(page(10L, created(11L, 1L), created(12L, 2L)));
+
+        mockMvc.perform(get("/api/v1/bankproducts/changes").param("since", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.items[0].type").value("CREATED"))
+                .andExpect(jsonPath("$.items[1].productId").value(2))
+                .andExpect(jsonPath("$.nextSince").value(12));
+    }
+
+    // CHANGES (long-poll): changes already there, answered right away
+    @Test
+    void testAwaitChangesAnswersRightAwayWhenThereAreChanges() throws Exception {
+        Mockito.when(changeFeed.getChanges(10L, 100)).thenReturn(page(10L, created(11L, 1L)));
+        Mockito.when(changeFeed.waitFor(any())).thenReturn(Duration.ofSeconds(30));
+
+        MvcResult result = mockMvc.perform(get("/api/v1/bankproducts/changes").param("since", "10").param("wait", "30"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.nextSince").value(11));
+        Mockito.verify(changeFeed, Mockito.never()).await(anyLong(), anyInt(), any());
+    }
+
+    // CHANGES (long-poll): no changes yet, answered when the feed calls back
+    @Test
+    @SuppressWarnings("unchecked")
+    void testAwaitChangesAnswersWhenChangesArrive() throws Exception {
+        Mockito.when(changeFeed.getChanges(10L, 100)).thenReturn(page(10L));
+        Mockito.when(changeFeed.waitFor(any())).thenReturn(Duration.ofSeconds(30));
+        ArgumentCaptor<Consumer<ChangeFeedPage>> listener = ArgumentCaptor.forClass(Consumer.class);
+        Mockito.when(changeFeed.await(eq(10L), eq(100), listener.capture())).thenReturn(() -> { });
+
+        MvcResult result = mockMvc.perform(get("/api/v1/bankproducts/changes").param("since", "10").param("wait", "30"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        listener.getValue().accept(page(10L, created(11L, 1L)));
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].seq").value(11));
+    }
+}
@@ -2,17 +2,35 @@ package net.projectsync.karatedemo.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import net.projectsync.karatedemo.model.BankProduct;
+import net.projectsync.karatedemo.model.BankProductSummary;
+import net.projectsync.karatedemo.model.BankProductView;
+import net.projectsync.karatedemo.model.BulkLookupResult;
+import net.projectsync.karatedemo.model.BatchCreateResult;
+import net.projectsync.karatedemo.model.BatchItemResult;
+import net.projectsync.karatedemo.model.CatalogVersion;
+import net.projectsync.karatedemo.model.CursorPage;
+import net.projectsync.karatedemo.service.BankProductBatchService;
 import net.projectsync.karatedemo.service.BankProductService;
+import net.projectsync.karatedemo.service.IdempotencyService;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -29,6 +47,12 @@ class BankProductControllerTest {
     @MockBean
     private BankProductService service;
 
+    @MockBean
+    private BankProductBatchService batchService;
+
+    @MockBean
+    private IdempotencyService idempotencyService;
+
     // CREATE: POST /api/v1/bankproducts
     @Test
     void testCreateProduct() throws Exception {
@@ -48,12 +72,42 @@ class BankProductControllerTest {
                 .andExpect(jsonPath("$.title").value("Savings Account"));
     }
 
+    // CREATE (bulk): POST /api/v1/bankproducts/batch
+    @Test
+    void testCreateProductsBatch() throws Exception {
+
+        BatchCreateResult result = new BatchCreateResult(1, 1, List.of(
+                BatchItemResult.created(0, 1L),
+                BatchItemResult.invalid(1, List.of("title must not be blank"))));
+
+        Mockito.when(batchService.createProducts(any())).thenReturn(result);
+
+        mockMvc.perform(post("/api/v1/bankproducts/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"title\":\"Savings Account\"}, {\"title\":\"\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.failed").value(1))
+                .andExpect(jsonPath("$.items[0].status").value("CREATED"))
+                .andExpect(jsonPath("$.items[0].id").value(1))
+                .andExpect(jsonPath("$.items[1].status").value("INVALID"));
+    }
+
+    // CREATE (bulk): POST /api/v1/bankproducts/batch (not JSON)
+    @Test
+    void testCreateProductsBatchMalformedBody() throws Exception {
+
+        mockMvc.perform(post("/api/v1/bankproducts/batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("not json"))
+                .andExpect(status().isBadRequest());
+    }
+
     // READ: GET /api/v1/bankproducts/{id} (found)
     @Test
     void testGetProductByIdFound() throws Exception {
 
-        BankProduct product = new BankProduct("Savings Account");
-        product.setId(1L);
+        BankProductView product = new BankProductView(1L, "Savings Account", null);
 
         Mockito.when(service.getProductById(1L)).thenReturn(Optional.of(product));
 
@@ -63,6 +117,49 @@ class BankProductControllerTest {
                 .andExpect(jsonPath("$.title").value("Savings Account"));
     }
 
+    // READ: GET /api/v1/bankproducts/{id} (ETag from the version)
+    @Test
+    void testGetProductByIdReturnsETag() throws Exception {
+
+        BankProductView product = new BankProductView(1L, "Savings Account", 2L);
+
+        Mockito.when(service.getProductById(1L)).thenReturn(Optional.of(product));
+
+        mockMvc.perform(get("/api/v1/bankproducts/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"2\""))
+                .andExpect(jsonPath("$.version").value(2));
+    }
+
+    // READ: GET /api/v1/bankproducts/{id} with If-None-Match (not modified)
+    @Test
+    void testGetProductByIdNotModified() throws Exception {
+
+        Mockito.when(service.getProductVersion(1L)).thenReturn(Optional.of(2L));
+
+        mockMvc.perform(get("/api/v1/bankproducts/1").header("If-None-Match", "\"2\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"2\""))
+                .andExpect(content().string(""));
+
+        Mockito.verify(service, Mockito.never()).getProductById(any());
+    }
+
+    // READ: GET /api/v1/bankproducts/{id} with If-None-Match (modified since)
+    @Test
+    void testGetProductByIdModified() throws Exception {
+
+        BankProductView product = new BankProductView(1L, "Savings Account", 3L);
+
+        Mockito.when(service.getProductVersion(1L)).thenReturn(Optional.of(3L));
+        Mockito.when(service.getProductById(1L)).thenReturn(Optional.of(product));
+
+        mockMvc.perform(get("/api/v1/bankproducts/1").header("If-None-Match", "\"2\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"3\""))
+                .andExpect(jsonPath("$.title").value("Savings Account"));
+    }
+
     // READ: GET /api/v1/bankproducts/{id} (not found)
     @Test
     void testGetProductByIdNotFound() throws Exception {
@@ -77,20 +174,159 @@ class BankProductControllerTest {
     @Test
     void testGetAllProducts() throws Exception {
 
-        BankProduct p1 = new BankProduct("Savings Account");
-        p1.setId(1L);
-        BankProduct p2 = new BankProduct("Fixed Deposit");
-        p2.setId(2L);
+        BankProductView p1 = new BankProductView(1L, "Savings Account", 0L);
+        BankProductView p2 = new BankProductView(2L, "Fixed Deposit", 0L);
 
-        Mockito.when(service.getAllProducts()).thenReturn(List.of(p1, p2));
+        readCatalog(new CatalogVersion(2, 3, 0), () -> List.of(p1, p2));
 
         mockMvc.perform(get("/api/v1/bankproducts"))
                 .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "W/\"2-3-0\""))
                 .andExpect(jsonPath("$.length()").value(2))
                 .andExpect(jsonPath("$[0].title").value("Savings Account"))
                 .andExpect(jsonPath("$[1].title").value("Fixed Deposit"));
     }
 
+    // READ: GET /api/v1/bankproducts with If-None-Match (not modified)
+    @Test
+    void testGetAllProductsNotModified() throws Exception {
+
+        AtomicBoolean loaded = new AtomicBoolean();
+        readCatalog(new CatalogVersion(2, 3, 0), () -> {
+            loaded.set(true);
+            return List.of();
+        });
+
+        mockMvc.perform(get("/api/v1/bankproducts").header("If-None-Match", "W/\"2-3-0\""))
+                .andExpect(status().isNotModified());
+
+        assertFalse(loaded.get());
+    }
+
+    // Runs the controller's reader against the given catalog, as BankProductService.readCatalog() does in its transaction
+    private void readCatalog(CatalogVersion version, Supplier<List<BankProductView>> products) {
+        Mockito.when(service.readCatalog(any())).thenAnswer(invocation ->
+                invocation.<BiFunction<CatalogVersion, Supplier<List<BankProductView>>, ?>>getArgument(0).apply(version, products));
+    }
+
+    // READ: GET /api/v1/bankproducts?after={id}&limit={n} (cursor page)
+    @Test
+    void testGetProductsPage() throws Exception {
+
+        BankProductView p1 = new BankProductView(6L, "Savings Account", 0L);
+        BankProductView p2 = new BankProductView(7L, "Fixed Deposit", 0L);
+
+        Mockito.when(service.getProductsPage(5L, 2)).thenReturn(new CursorPage<>(List.of(p1, p2), 7L));
+
+        mockMvc.perform(get("/api/v1/bankproducts").param("after", "5").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.items[0].id").value(6))
+                .andExpect(jsonPath("$.items[1].title").value("Fixed Deposit"))
+                .andExpect(jsonPath("$.nextCursor").value(7));
+    }
+
+    // READ (by IDs): GET /api/v1/bankproducts?ids=2,1,9
+    @Test
+    void testGetProductsByIds() throws Exception {
+
+        BulkLookupResult result = new BulkLookupResult(List.of(
+                new BankProductView(2L, "Fixed Deposit", 0L),
+                new BankProductView(1L, "Savings Account", 0L)), List.of(9L));
+
+        Mockito.when(service.getProductsByIds(List.of(2L, 1L, 9L))).thenReturn(result);
+
+        mockMvc.perform(get("/api/v1/bankproducts").param("ids", "2,1,9"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(2))
+                .andExpect(jsonPath("$.items[1].id").value(1))
+                .andExpect(jsonPath("$.missing[0]").value(9));
+    }
+
+    // READ (by IDs): GET /api/v1/bankproducts?ids=2,1&limit=1 is a lookup, not an ambiguous mapping (500)
+    @Test
+    void testGetProductsByIdsWithLimit() throws Exception {
+
+        BulkLookupResult result = new BulkLookupResult(List.of(
+                new BankProductView(2L, "Fixed Deposit", 0L),
+                new BankProductView(1L, "Savings Account", 0L)), List.of());
+
+        Mockito.when(service.getProductsByIds(List.of(2L, 1L))).thenReturn(result);
+
+        mockMvc.perform(get("/api/v1/bankproducts").param("ids", "2,1").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2));
+
+        Mockito.verify(service, Mockito.never()).getProductsPage(any(), anyInt());
+    }
+
+    // READ (by IDs): POST /api/v1/bankproducts/lookup, too many ids -> 400
+    @Test
+    void testLookupProductsTooManyIds() throws Exception {
+
+        Mockito.when(service.getProductsByIds(List.of(1L, 2L))).thenThrow(new IllegalArgumentException("too many"));
+
+        mockMvc.perform(post("/api/v1/bankproducts/lookup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[1,2]"))
+                .andExpect(status().isBadRequest());
+    }
+
+    // SEARCH: GET /api/v1/bankproducts/search?q=sav&match=substring
+    @Test
+    void testSearchProducts() throws Exception {
+
+        BankProductSummary summary = new BankProductSummary() {
+            public Long getId() { return 3L; }
+            public String getTitle() { return "Savings Account"; }
+        };
+
+        Mockito.when(service.searchProducts("sav", BankProductService.SearchMatch.SUBSTRING, null, 20))
+                .thenReturn(new CursorPage<>(List.of(summary), null));
+
+        mockMvc.perform(get("/api/v1/bankproducts/search").param("q", "sav").param("match", "substring"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(3))
+                .andExpect(jsonPath("$.items[0].title").value("Savings Account"))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    // SEARCH: unknown match mode or invalid term -> 400
+    @Test
+    void testSearchProductsBadRequest() throws Exception {
+
+        mockMvc.perform(get("/api/v1/bankproducts/search").param("q", "sav").param("match", "fuzzy"))
+                .andExpect(status().isBadRequest());
+
+        Mockito.when(service.searchProducts("ab", BankProductService.SearchMatch.SUBSTRING, null, 20))
+                .thenThrow(new IllegalArgumentException("too short"));
+
+        mockMvc.perform(get("/api/v1/bankproducts/search").param("q", "ab").param("match", "substring"))
+                .andExpect(status().isBadRequest());
+    }
+
+    // EXPORT: GET /api/v1/bankproducts/export (NDJSON stream)
+    @Test
+    void testExportProducts() throws Exception {
+
+        String ndjson = "{\"id\":1,\"title\":\"Savings Account\"}\n{\"id\":2,\"title\":\"Fixed Deposit\"}\n";
+        Mockito.when(service.exportProducts(any(OutputStream.class))).thenAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(0);
+            out.write(ndjson.getBytes(StandardCharsets.UTF_8));
+            return 2L;
+        });
+
+        // StreamingResponseBody is written asynchronously, so dispatch the async result first
+        MvcResult result = mockMvc.perform(get("/api/v1/bankproducts/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(ndjson));
+    }
+
     // UPDATE: PUT /api/v1/bankproducts/{id} (found)
     @Test
     void testUpdateProductFound() throws Exception {
@@ -109,6 +345,25 @@ class BankProductControllerTest {
                 .andExpect(jsonPath("$.title").value("New Title"));
     }
 
+    // UPDATE: PUT /api/v1/bankproducts/{id} without If-Match returns the new version as well
+    @Test
+    void testUpdateProductReturnsETag() throws Exception {
+
+        BankProduct updated = new BankProduct("New Title");
+        updated.setId(1L);
+        updated.setVersion(5L);
+
+        Mockito.when(service.updateProduct(eq(1L), any(BankProduct.class)))
+                .thenReturn(Optional.of(updated));
+
+        mockMvc.perform(put("/api/v1/bankproducts/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new BankProduct("New Title"))))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"5\""))
+                .andExpect(jsonPath("$.version").value(5));
+    }
+
     // UPDATE: PUT /api/v1/bankproducts/{id} (not found)
     @Test
     void testUpdateProductNotFound() throws Exception {
@@ -125,6 +380,52 @@ class BankProductControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    // UPDATE: PUT /api/v1/bankproducts/{id} with If-Match (current version)
+    @Test
+    void testUpdateProductIfMatch() throws Exception {
+
+        BankProduct updated = new BankProduct("New Title");
+        updated.setId(1L);
+        updated.setVersion(3L);
+
+        Mockito.when(service.updateProduct(eq(1L), any(BankProduct.class), eq(2L))).thenReturn(updated);
+
+        mockMvc.perform(put("/api/v1/bankproducts/1")
+                        .header("If-Match", "\"2\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new BankProduct("New Title"))))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"3\""))
+                .andExpect(jsonPath("$.title").value("New Title"));
+    }
+
+    // UPDATE: PUT /api/v1/bankproducts/{id} with If-Match (stale version)
+    @Test
+    void testUpdateProductIfMatchStale() throws Exception {
+
+        Mockito.when(service.updateProduct(eq(1L), any(BankProduct.class), eq(1L)))
+                .thenThrow(new OptimisticLockingFailureException("stale"));
+
+        mockMvc.perform(put("/api/v1/bankproducts/1")
+                        .header("If-Match", "\"1\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new BankProduct("New Title"))))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    // UPDATE: PUT /api/v1/bankproducts/{id} with an If-Match that is not a product ETag
+    @Test
+    void testUpdateProductIfMatchInvalid() throws Exception {
+
+        mockMvc.perform(put("/api/v1/bankproducts/1")
+                        .header("If-Match", "W/\"1\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new BankProduct("New Title"))))
+                .andExpect(status().isPreconditionFailed());
+
+        Mockito.verifyNoInteractions(service);
+    }
+
     // DELETE: DELETE /api/v1/bankproducts/{id} (found)
     @Test
     void testDeleteProductFound() throws Exception {
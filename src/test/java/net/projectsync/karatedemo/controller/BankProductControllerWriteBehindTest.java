@@ -0,0 +1,78 @@
+package net.projectsync.karatedemo.controller;
+
+import net.projectsync.karatedemo.model.BankProduct;
+import net.projectsync.karatedemo.service.BankProductBatchService;
+import net.projectsync.karatedemo.service.BankProductService;
+import net.projectsync.karatedemo.service.IdempotencyService;
+import net.projectsync.karatedemo.service.BankProductWriteBehindQueue;
+import net.projectsync.karatedemo.service.WriteBehindRejectedException;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import static org.mockito.ArgumentMatchers.any;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// POST /api/v1/bankproducts with bankproducts.ingest.mode=write-behind (the queue bean exists)
+@WebMvcTest(BankProductController.class)
+class BankProductControllerWriteBehindTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private BankProductService service;
+
+    @MockBean
+    private BankProductBatchService batchService;
+
+    @MockBean
+    private IdempotencyService idempotencyService;
+
+    @MockBean
+    private BankProductWriteBehindQueue queue;
+
+    @Test
+    void testCreateGoesThroughQueue() throws Exception {
+        BankProduct saved = new BankProduct("Savings Account");
+        saved.setId(1L);
+        saved.setVersion(0L);
+        Mockito.when(queue.create(any(BankProduct.class))).thenReturn(saved);
+
+        mockMvc.perform(post("/api/v1/bankproducts")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Savings Account\"}"))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Location", "/api/v1/bankproducts/1"))
+                .andExpect(jsonPath("$.id").value(1));
+
+        Mockito.verifyNoInteractions(service);
+    }
+
+    @Test
+    void testFullQueueReturns429() throws Exception {
+        Mockito.when(queue.create(any(BankProduct.class)))
+                .thenThrow(new WriteBehindRejectedException(WriteBehindRejectedException.Reason.FULL, "full"));
+
+        mockMvc.perform(post("/api/v1/bankproducts")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Savings Account\"}"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "1"));
+    }
+
+    @Test
+    void testWriteNotInTimeReturns503() throws Exception {
+        Mockito.when(queue.create(any(BankProduct.class)))
+                .thenThrow(new WriteBehindRejectedException(WriteBehindRejectedException.Reason.TIMEOUT, "timeout"));
+
+        mockMvc.perform(post("/api/v1/bankproducts")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Savings Account\"}"))
+                .andExpect(status().isServiceUnavailable());
+    }
+}
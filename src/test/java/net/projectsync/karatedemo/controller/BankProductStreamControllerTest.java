@@ -0,0 +1,50 @@
+package net.projectsync.karatedemo.controller;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import java.util.Set;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(BankProductStreamController.class)
+class BankProductStreamControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private BankProductUpdateBroadcaster broadcaster;
+
+    // STREAM: GET /api/v1/bankproducts/stream?ids=1,2
+    @Test
+    void testSubscribeToProducts() throws Exception {
+        Mockito.when(broadcaster.subscribe(Set.of(1L, 2L))).thenReturn(new SseEmitter());
+
+        mockMvc.perform(get("/api/v1/bankproducts/stream").param("ids", "1,2").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM));
+    }
+
+    // STREAM: GET /api/v1/bankproducts/stream (whole catalog)
+    @Test
+    void testSubscribeToCatalog() throws Exception {
+        Mockito.when(broadcaster.subscribe(Set.of())).thenReturn(new SseEmitter());
+
+        mockMvc.perform(get("/api/v1/bankproducts/stream").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted());
+    }
+
+    @Test
+    void testTooManySubscribers() throws Exception {
+        Mockito.when(broadcaster.subscribe(Set.of())).thenReturn(null);
+
+        mockMvc.perform(get("/api/v1/bankproducts/stream").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isServiceUnavailable());
+    }
+}
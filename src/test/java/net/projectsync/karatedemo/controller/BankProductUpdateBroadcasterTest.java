@@ -0,0 +1,209 @@
+package net.projectsync.karatedemo.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import net.projectsync.karatedemo.config.BankProductProperties;
+import net.projectsync.karatedemo.model.BankProductChange;
+import net.projectsync.karatedemo.service.BankProductChangeFeed;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+class BankProductUpdateBroadcasterTest {
+
+    @Mock
+    private BankProductChangeFeed changeFeed;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final BankProductProperties.Stream config = new BankProductProperties.Stream();
+    private BankProductUpdateBroadcaster broadcaster;
+
+    @BeforeEach
+    void setUp() {
+        // Following the change feed is not part of these tests, changes are published directly
+        lenient().when(changeFeed.await(anyLong(), anyInt(), any())).thenReturn(() -> { });
+        config.setBufferSize(2);
+        config.setMaxSubscribers(3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.close();
+    }
+
+    // Senders run on the publishing thread
+    private void start(Executor senders) {
+        broadcaster = new BankProductUpdateBroadcaster(changeFeed, objectMapper, config, senders);
+    }
+
+    private RecordingEmitter subscribe(Long... ids) {
+        RecordingEmitter emitter = new RecordingEmitter();
+        assertThat(broadcaster.subscribe(Set.of(ids), () -> emitter)).isSameAs(emitter);
+        return emitter;
+    }
+
+    private static BankProductChange change(long seq, long productId, BankProductChange.Type type) {
+        BankProductChange change = new BankProductChange(productId, type, "Savings Account", 0L, Instant.now());
+        change.setSeq(seq);
+        return change;
+    }
+
+    @Test
+    void testUpdatesGoToMatchingSubscribers() {
+        start(Runnable::run);
+        RecordingEmitter catalog = subscribe();
+        RecordingEmitter product1 = subscribe(1L);
+
+        broadcaster.publish(List.of(change(10, 1L, BankProductChange.Type.UPDATED), change(11, 2L, BankProductChange.Type.DELETED)));
+
+        assertThat(catalog.events).hasSize(2);
+        assertThat(catalog.events.get(0)).startsWith("event:updated\ndata:").contains("\"seq\":10", "\"productId\":1");
+        assertThat(catalog.events.get(1)).startsWith("event:deleted\n").contains("\"productId\":2");
+        assertThat(product1.events).hasSize(1);
+        assertThat(product1.events.get(0)).contains("\"seq\":10");
+    }
+
+    @Test
+    void testSlowSubscriberIsDisconnected() {
+        List<Runnable> senders = new ArrayList<>();
+        start(senders::add); // nothing is sent until the sender tasks run, the buffer fills up
+        RecordingEmitter slow = subscribe();
+
+        broadcaster.publish(List.of(change(10, 1L, BankProductChange.Type.UPDATED), change(11, 1L, BankProductChange.Type.UPDATED)));
+        assertThat(broadcaster.subscribers()).isEqualTo(1);
+
+        broadcaster.publish(List.of(change(12, 1L, BankProductChange.Type.UPDATED)));
+
+        assertThat(broadcaster.subscribers()).isZero();
+        // The publishing thread never touches the emitter, its sender completes it
+        assertThat(slow.completed).isFalse();
+
+        new ArrayList<>(senders).forEach(Runnable::run);
+
+        assertThat(slow.completed).isTrue();
+        assertThat(slow.events).isEmpty();
+    }
+
+    @Test
+    void testBlockedWriteDisconnectsOnlyThatSubscriber() throws InterruptedException {
+        config.setSendTimeout(Duration.ofMillis(50));
+        start(Executors.newCachedThreadPool());
+        RecordingEmitter blocked = subscribe(1L);
+        blocked.writes = new CountDownLatch(1);
+        RecordingEmitter other = subscribe(2L);
+
+        broadcaster.publish(List.of(change(10, 1L, BankProductChange.Type.UPDATED)));
+        Thread.sleep(200);
+        broadcaster.checkWrites();
+
+        assertThat(broadcaster.subscribers()).isEqualTo(1);
+        assertThat(blocked.completed).isFalse(); // its sender is still in the write
+
+        broadcaster.publish(List.of(change(11, 2L, BankProductChange.Type.UPDATED)));
+        awaitUntil(() -> other.events.size() == 1);
+
+        // Once the write returns, the sender completes the disconnected subscriber
+        blocked.writes.countDown();
+        awaitUntil(() -> blocked.completed);
+    }
+
+    @Test
+    void testClosedConnectionIsRemoved() {
+        start(Runnable::run);
+        RecordingEmitter closed = subscribe(1L);
+        closed.failing = true;
+
+        broadcaster.publish(List.of(change(10, 1L, BankProductChange.Type.UPDATED)));
+
+        assertThat(broadcaster.subscribers()).isZero();
+    }
+
+    @Test
+    void testSubscribersAreLimited() {
+        start(Runnable::run);
+        subscribe();
+        subscribe(1L);
+        subscribe(2L);
+
+        assertThat(broadcaster.subscribe(Set.of(), RecordingEmitter::new)).isNull();
+        assertThat(broadcaster.subscribers()).isEqualTo(3);
+    }
+
+    @Test
+    void testFollowingIsRetriedWhenTheDatabaseIsUnavailable() {
+        Mockito.when(changeFeed.latestSeq())
+                .thenThrow(new DataAccessResourceFailureException("database down"))
+                .thenReturn(5L);
+        start(Runnable::run);
+
+        subscribe(1L);
+
+        // The first attempt fails, the retry after 1s follows the feed from the newest seq
+        Mockito.verify(changeFeed, Mockito.timeout(3000)).await(eq(5L), anyInt(), any());
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 3000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    // Records the events as they would be written to the connection
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final List<String> events = new CopyOnWriteArrayList<>();
+        private volatile boolean failing;
+        private volatile boolean completed;
+        // When set, writes block until it is counted down (a peer that does not read)
+        private volatile CountDownLatch writes;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (failing) {
+                throw new IOException("Broken pipe");
+            }
+            if (writes != null) {
+                try {
+                    writes.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+            events.add(builder.build().stream().map(d -> d.getData().toString()).collect(Collectors.joining()));
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed = true;
+            super.complete();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package net.projectsync.karatedemo.controller;
+
+import net.projectsync.karatedemo.model.BankProduct;
+import net.projectsync.karatedemo.repository.BankProductRepository;
+import net.projectsync.karatedemo.repository.IdempotencyRecordRepository;
+import net.projectsync.karatedemo.service.IdempotencyService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import java.util.UUID;
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Idempotency-Key on H2 (profile 'h2') with the JPA store, as used by several nodes
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("h2")
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:idempotency;DB_CLOSE_DELAY=-1",
+        "bankproducts.idempotency.store=jpa"
+})
+class IdempotencyKeyIT {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private BankProductRepository productRepository;
+
+    @Autowired
+    private IdempotencyRecordRepository recordRepository;
+
+    private ResponseEntity<BankProduct> send(HttpMethod method, String path, String key, String ifMatch, BankProduct body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(IdempotencyService.HEADER, key);
+        if (ifMatch != null) {
+            headers.setIfMatch(ifMatch);
+        }
+        return restTemplate.exchange("/api/v1/bankproducts" + path, method, new HttpEntity<>(body, headers), BankProduct.class);
+    }
+
+    @Test
+    void testRetriedCreateReturnsFirstProduct() {
+        String key = UUID.randomUUID().toString();
+        long before = productRepository.count();
+
+        ResponseEntity<BankProduct> first = send(HttpMethod.POST, "", key, null, new BankProduct("Savings Account"));
+        ResponseEntity<BankProduct> retry = send(HttpMethod.POST, "", key, null, new BankProduct("Savings Account"));
+
+        assertThat(first.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(retry.getBody().getId()).isEqualTo(first.getBody().getId());
+        assertThat(retry.getHeaders().getLocation()).isEqualTo(first.getHeaders().getLocation());
+        assertThat(retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(productRepository.count()).isEqualTo(before + 1);
+        assertThat(recordRepository.findById(key)).hasValueSatisfying(record -> assertThat(record.getStatus()).isEqualTo(201));
+    }
+
+    @Test
+    void testKeyReusedForDifferentProductIsRejected() {
+        String key = UUID.randomUUID().toString();
+        send(HttpMethod.POST, "", key, null, new BankProduct("Savings Account"));
+
+        ResponseEntity<BankProduct> reused = send(HttpMethod.POST, "", key, null, new BankProduct("Fixed Deposit"));
+
+        assertThat(reused.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    @Test
+    void testRetriedConditionalUpdateIsNotRejectedByItsOwnWrite() {
+        BankProduct created = send(HttpMethod.POST, "", UUID.randomUUID().toString(), null, new BankProduct("Savings Account")).getBody();
+        String key = UUID.randomUUID().toString();
+
+        ResponseEntity<BankProduct> first = send(HttpMethod.PUT, "/" + created.getId(), key, "\"0\"", new BankProduct("Fixed Deposit"));
+        // Without the key this retry would get 412, the product is at version 1 now
+        ResponseEntity<BankProduct> retry = send(HttpMethod.PUT, "/" + created.getId(), key, "\"0\"", new BankProduct("Fixed Deposit"));
+
+        assertThat(first.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(retry.getHeaders().getETag()).isEqualTo("\"1\"");
+        assertThat(retry.getBody().getTitle()).isEqualTo("Fixed Deposit");
+    }
+}
@@ -0,0 +1,83 @@
+package net.projectsync.karatedemo.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitFilterTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    // 10 tokens per second, burst 5; the export costs 5 tokens, everything else 1
+    private final RateLimitFilter filter = new RateLimitFilter(10, 5, 1000, "X-Client-Id",
+            request -> request.getRequestURI().endsWith("/export") ? 5 : 1, now::get);
+
+    private MockHttpServletResponse get(String uri, String client) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        request.addHeader("X-Client-Id", client);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    @Test
+    void testBurstPassesThenClientIsRejectedWith429() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            assertThat(get("/api/v1/bankproducts/1", "client-a").getStatus()).isEqualTo(HttpStatus.OK.value());
+        }
+
+        MockHttpServletResponse rejected = get("/api/v1/bankproducts/1", "client-a");
+
+        assertThat(rejected.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+        assertThat(rejected.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        assertThat(rejected.getContentLength()).isZero();
+        assertThat(filter.rejected()).isEqualTo(1);
+    }
+
+    @Test
+    void testTokensAreRefilledOverTime() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            get("/api/v1/bankproducts/1", "client-a");
+        }
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100)); // one token
+
+        assertThat(get("/api/v1/bankproducts/1", "client-a").getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(get("/api/v1/bankproducts/1", "client-a").getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+    }
+
+    @Test
+    void testExpensiveRequestTakesMoreTokens() throws Exception {
+        assertThat(get("/api/v1/bankproducts/export", "client-a").getStatus()).isEqualTo(HttpStatus.OK.value());
+
+        assertThat(get("/api/v1/bankproducts/1", "client-a").getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+    }
+
+    @Test
+    void testClientsHaveTheirOwnBuckets() throws Exception {
+        get("/api/v1/bankproducts/export", "client-a");
+
+        assertThat(get("/api/v1/bankproducts/export", "client-b").getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(filter.clients()).isEqualTo(2);
+    }
+
+    @Test
+    void testRemoteAddressWithoutClientHeader() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/bankproducts/export");
+        request.setRemoteAddr("10.0.0.1");
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockHttpServletRequest again = new MockHttpServletRequest("GET", "/api/v1/bankproducts/1");
+        again.setRemoteAddr("10.0.0.1");
+        filter.doFilter(again, response, new MockFilterChain());
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+    }
+}
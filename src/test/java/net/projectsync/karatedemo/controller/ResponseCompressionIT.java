@@ -0,0 +1,117 @@
+package net.projectsync.karatedemo.controller;
+
+import net.projectsync.karatedemo.model.BankProduct;
+import net.projectsync.karatedemo.repository.BankProductRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Bytes on the wire and latency of the list endpoint, gzip vs identity, over h2c.
+ * java.net.http.HttpClient does not decompress, so the body length is the transferred size.
+ * Results: build/reports/http-compression.txt
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("h2")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ResponseCompressionIT {
+
+    private static final int PRODUCTS = 500;
+    private static final int RUNS = 50;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private BankProductRepository repository;
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build();
+    private final List<BankProduct> created = new ArrayList<>();
+
+    @BeforeAll
+    void createProducts() {
+        created.addAll(repository.saveAll(products()));
+    }
+
+    @AfterAll
+    void deleteProducts() {
+        repository.deleteAll(created);
+    }
+
+    @Test
+    void testListIsCompressedOverHttp2() throws Exception {
+        HttpResponse<byte[]> identity = get("/api/v1/bankproducts", "identity");
+        HttpResponse<byte[]> gzip = get("/api/v1/bankproducts", "gzip");
+
+        assertThat(gzip.version()).isEqualTo(HttpClient.Version.HTTP_2);
+        assertThat(identity.headers().firstValue("Content-Encoding")).isEmpty();
+        assertThat(gzip.headers().firstValue("Content-Encoding")).contains("gzip");
+        // repetitive JSON: expect well below a third of the plain size
+        assertThat(gzip.body().length).isLessThan(identity.body().length / 3);
+
+        long identityMicros = medianMicros("/api/v1/bankproducts", "identity");
+        long gzipMicros = medianMicros("/api/v1/bankproducts", "gzip");
+        report(String.format("GET /api/v1/bankproducts (%d products, %s)%n"
+                        + "identity: %8d bytes, median %6d us%n"
+                        + "gzip:     %8d bytes, median %6d us%n",
+                PRODUCTS, gzip.version(), identity.body().length, identityMicros, gzip.body().length, gzipMicros));
+    }
+
+    @Test
+    void testSmallResponseIsNotCompressed() throws Exception {
+        HttpResponse<byte[]> single = get("/api/v1/bankproducts/" + created.get(0).getId(), "gzip");
+
+        assertThat(single.statusCode()).isEqualTo(200);
+        assertThat(single.headers().firstValue("Content-Encoding")).isEmpty();
+    }
+
+    private List<BankProduct> products() {
+        List<BankProduct> products = new ArrayList<>();
+        for (int i = 0; i < PRODUCTS; i++) {
+            products.add(new BankProduct("Savings Account " + i));
+        }
+        return products;
+    }
+
+    private HttpResponse<byte[]> get(String path, String encoding) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Accept", "application/json")
+                .header("Accept-Encoding", encoding)
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private long medianMicros(String path, String encoding) throws IOException, InterruptedException {
+        long[] micros = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            get(path, encoding);
+            micros[i] = (System.nanoTime() - start) / 1_000;
+        }
+        Arrays.sort(micros);
+        return micros[RUNS / 2];
+    }
+
+    // Written to build/reports only, the test output stays quiet
+    private static void report(String text) throws IOException {
+        Path file = Path.of("build", "reports", "http-compression.txt");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, text);
+    }
+}
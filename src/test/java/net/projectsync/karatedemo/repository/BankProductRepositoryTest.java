@@ -1,15 +1,21 @@
 package net.projectsync.karatedemo.repository;
 
 import net.projectsync.karatedemo.model.BankProduct;
+import net.projectsync.karatedemo.model.BankProductSummary;
+import net.projectsync.karatedemo.model.BankProductView;
+import net.projectsync.karatedemo.model.CatalogVersion;
+import org.hibernate.Session;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.TestPropertySource;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 import static org.assertj.core.api.Assertions.assertThat;
 
 @DataJpaTest
@@ -101,6 +107,71 @@ class BankProductRepositoryTest {
                 .containsExactlyInAnyOrder("Savings Account", "Credit Card");
     }
 
+    @Test
+    @DisplayName("Should read views without adding entities to the persistence context")
+    void testViewQueries() {
+        BankProduct first = bankProductRepository.saveAndFlush(bankProduct1);
+        BankProduct second = bankProductRepository.saveAndFlush(bankProduct2);
+        entityManager.clear();
+
+        Optional<BankProductView> view = bankProductRepository.findViewById(first.getId());
+        assertThat(view).contains(new BankProductView(first.getId(), "Savings Account", 0L));
+
+        assertThat(bankProductRepository.findAllViews())
+                .extracting(BankProductView::getId).containsExactly(first.getId(), second.getId());
+        assertThat(bankProductRepository.findViewsAfter(first.getId(), PageRequest.of(0, 10)))
+                .extracting(BankProductView::getTitle).containsExactly("Credit Card");
+        try (Stream<BankProductView> views = bankProductRepository.streamAllViews()) {
+            assertThat(views.count()).isEqualTo(2);
+        }
+
+        assertThat(bankProductRepository.findViewById(-1L)).isEmpty();
+
+        // Constructor expressions create no managed entities
+        Session session = entityManager.getEntityManager().unwrap(Session.class);
+        assertThat(session.getStatistics().getEntityCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should find views by a list of ids")
+    void testFindViewsByIdIn() {
+        BankProduct first = bankProductRepository.saveAndFlush(bankProduct1);
+        BankProduct second = bankProductRepository.saveAndFlush(bankProduct2);
+
+        List<BankProductView> views = bankProductRepository.findViewsByIdIn(List.of(second.getId(), first.getId(), -1L));
+
+        assertThat(views).extracting(BankProductView::getId).containsExactlyInAnyOrder(first.getId(), second.getId());
+    }
+
+    @Test
+    @DisplayName("Should search titles case-insensitively by prefix and substring")
+    void testSearchByTitle() {
+        BankProduct savings = bankProductRepository.saveAndFlush(bankProduct1);
+        bankProductRepository.saveAndFlush(bankProduct2);
+        BankProduct card = bankProductRepository.saveAndFlush(new BankProduct("Travel Savings Card"));
+
+        List<BankProductSummary> prefix = bankProductRepository.searchByTitle("sav%", 0L, PageRequest.of(0, 10));
+        assertThat(prefix).extracting(BankProductSummary::getTitle).containsExactly("Savings Account");
+
+        List<BankProductSummary> substring = bankProductRepository.searchByTitle("%savings%", 0L, PageRequest.of(0, 10));
+        assertThat(substring).extracting(BankProductSummary::getId).containsExactly(savings.getId(), card.getId());
+
+        // keyset: only rows after the cursor
+        List<BankProductSummary> next = bankProductRepository.searchByTitle("%savings%", savings.getId(), PageRequest.of(0, 10));
+        assertThat(next).extracting(BankProductSummary::getId).containsExactly(card.getId());
+    }
+
+    @Test
+    @DisplayName("Should match escaped LIKE wildcards literally")
+    void testSearchByTitleEscapedWildcard() {
+        bankProductRepository.saveAndFlush(new BankProduct("100% Offset"));
+        bankProductRepository.saveAndFlush(new BankProduct("1000 Bonus"));
+
+        List<BankProductSummary> result = bankProductRepository.searchByTitle("100\\%%", 0L, PageRequest.of(0, 10));
+
+        assertThat(result).extracting(BankProductSummary::getTitle).containsExactly("100% Offset");
+    }
+
     @Test
     @DisplayName("Should return empty list when no bank products exist")
     void testFindAllEmpty() {
@@ -130,6 +201,64 @@ class BankProductRepositoryTest {
         assertThat(bankProductRepository.findById(id)).isEmpty();
     }
 
+    @Test
+    @DisplayName("Should update title with a single statement")
+    void testUpdateTitleById() {
+        BankProduct saved = bankProductRepository.saveAndFlush(bankProduct1);
+
+        int updatedRows = bankProductRepository.updateTitleById(saved.getId(), "Updated Savings Account");
+
+        assertThat(updatedRows).isEqualTo(1);
+        // clearAutomatically detached 'saved', so this reads the row again
+        assertThat(bankProductRepository.findById(saved.getId()))
+                .get()
+                .extracting(BankProduct::getTitle)
+                .isEqualTo("Updated Savings Account");
+        assertThat(bankProductRepository.updateTitleById(999L, "Missing")).isZero();
+        assertThat(bankProductRepository.findVersionById(saved.getId())).contains(1L);
+    }
+
+    @Test
+    @DisplayName("Should update only when the version matches")
+    void testUpdateTitleByIdAndVersion() {
+        BankProduct saved = bankProductRepository.saveAndFlush(bankProduct1);
+        assertThat(saved.getVersion()).isZero();
+
+        assertThat(bankProductRepository.updateTitleByIdAndVersion(saved.getId(), "First", 0L)).isEqualTo(1);
+        // Same expected version again: the row is already at version 1
+        assertThat(bankProductRepository.updateTitleByIdAndVersion(saved.getId(), "Second", 0L)).isZero();
+
+        assertThat(bankProductRepository.findById(saved.getId()).get().getTitle()).isEqualTo("First");
+    }
+
+    @Test
+    @DisplayName("Should change the catalog version on create, update and delete")
+    void testFindCatalogVersion() {
+        CatalogVersion empty = bankProductRepository.findCatalogVersion();
+        assertThat(empty.getCount()).isZero();
+
+        BankProduct saved = bankProductRepository.saveAndFlush(bankProduct1);
+        CatalogVersion afterCreate = bankProductRepository.findCatalogVersion();
+        assertThat(afterCreate).isNotEqualTo(empty);
+
+        bankProductRepository.updateTitleById(saved.getId(), "Updated");
+        CatalogVersion afterUpdate = bankProductRepository.findCatalogVersion();
+        assertThat(afterUpdate).isNotEqualTo(afterCreate);
+
+        bankProductRepository.deleteProductById(saved.getId());
+        assertThat(bankProductRepository.findCatalogVersion()).isNotEqualTo(afterUpdate);
+    }
+
+    @Test
+    @DisplayName("Should delete by id with a single statement")
+    void testDeleteProductById() {
+        BankProduct saved = bankProductRepository.saveAndFlush(bankProduct1);
+
+        assertThat(bankProductRepository.deleteProductById(saved.getId())).isEqualTo(1);
+        assertThat(bankProductRepository.findById(saved.getId())).isEmpty();
+        assertThat(bankProductRepository.deleteProductById(saved.getId())).isZero();
+    }
+
     @Test
     @DisplayName("Should delete bank product entity")
     void testDelete() {
@@ -0,0 +1,145 @@
+package net.projectsync.karatedemo.repository;
+
+import net.projectsync.karatedemo.model.BankProduct;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import javax.persistence.EntityManagerFactory;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Second-level cache on and off. A write of "another node" is simulated with plain JDBC, which bypasses Hibernate
+ * and therefore this node's second-level cache.
+ * Not transactional: the caches are only updated when transactions commit, so every repository call commits on its own.
+ * The cases run as two test classes (Disabled, Enabled), each with its own application context and settings
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = {
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.default_schema=",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@DisplayName("BankProduct second-level cache")
+abstract class BankProductSecondLevelCacheTest {
+
+    @Autowired
+    protected BankProductRepository repository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    protected SessionFactory sessionFactory;
+    protected Statistics statistics;
+    protected Long id;
+
+    @BeforeEach
+    void setUp() {
+        sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        statistics = sessionFactory.getStatistics();
+        id = repository.save(new BankProduct("Savings Account")).getId();
+        // The insert has put the new product into the cache, start every test from an empty cache
+        sessionFactory.getCache().evictAllRegions();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        repository.deleteAll();
+    }
+
+    // Every call runs in its own transaction and persistence context, so only the second-level cache can avoid the SELECT
+    protected BankProduct read() {
+        return repository.findById(id).orElseThrow();
+    }
+
+    protected void updateOnAnotherNode(String title) {
+        jdbcTemplate.update("update bank_product set title = ? where id = ?", title, id);
+    }
+
+    @TestPropertySource(properties = {
+            "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+            "spring.jpa.properties.hibernate.cache.use_query_cache=false"
+    })
+    @DisplayName("when disabled (default)")
+    static class Disabled extends BankProductSecondLevelCacheTest {
+
+        @Test
+        @DisplayName("Should read every product from the database and see writes of other nodes immediately")
+        void testNoCachingAndNoStaleReads() {
+            read();
+            updateOnAnotherNode("Changed elsewhere");
+
+            assertThat(read().getTitle()).isEqualTo("Changed elsewhere");
+            assertThat(sessionFactory.getCache().containsEntity(BankProduct.class, id)).isFalse();
+            assertThat(statistics.getSecondLevelCacheHitCount()).isZero();
+            assertThat(statistics.getSecondLevelCachePutCount()).isZero();
+            assertThat(statistics.getEntityLoadCount()).isEqualTo(2);
+        }
+
+        @Test
+        @DisplayName("Should run findAll against the database every time")
+        void testFindAllIsNotCached() {
+            repository.findAll();
+            repository.findAll();
+
+            assertThat(statistics.getQueryCacheHitCount()).isZero();
+            assertThat(statistics.getQueryExecutionCount()).isEqualTo(2);
+        }
+    }
+
+    @TestPropertySource(properties = {
+            "spring.jpa.properties.hibernate.cache.use_second_level_cache=true",
+            "spring.jpa.properties.hibernate.cache.use_query_cache=true"
+    })
+    @DisplayName("when enabled")
+    static class Enabled extends BankProductSecondLevelCacheTest {
+
+        @Test
+        @DisplayName("Should serve repeated reads from the cache, until this node changes the product")
+        void testCachedUntilLocalWrite() {
+            read();
+            read();
+
+            assertThat(statistics.getSecondLevelCacheHitCount()).isEqualTo(1);
+            assertThat(statistics.getEntityLoadCount()).isEqualTo(1);
+
+            // A bulk update through Hibernate evicts the region
+            repository.updateTitleById(id, "Changed here");
+
+            assertThat(read().getTitle()).isEqualTo("Changed here");
+        }
+
+        @Test
+        @DisplayName("Should keep serving the cached value after a write of another node (why it is off by default)")
+        void testWriteOfAnotherNodeIsNotSeen() {
+            read();
+            updateOnAnotherNode("Changed elsewhere");
+
+            assertThat(read().getTitle()).isEqualTo("Savings Account");
+        }
+
+        @Test
+        @DisplayName("Should cache findAll results in the query region")
+        void testFindAllIsCached() {
+            repository.findAll();
+            repository.findAll();
+
+            assertThat(statistics.getQueryCacheHitCount()).isEqualTo(1);
+            assertThat(statistics.getQueryRegionStatistics(BankProductRepository.ALL_PRODUCTS_REGION).getHitCount()).isEqualTo(1);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package net.projectsync.karatedemo.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.projectsync.karatedemo.config.BankProductProperties;
+import net.projectsync.karatedemo.model.BankProduct;
+import net.projectsync.karatedemo.model.BatchCreateResult;
+import net.projectsync.karatedemo.model.BatchItemResult;
+import net.projectsync.karatedemo.repository.BankProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import javax.persistence.EntityManager;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BankProductBatchServiceTest {
+
+    @Mock
+    private BankProductRepository repository;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    // The real constraints of BankProduct
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @Mock
+    private BankProductOutbox outbox;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private BankProductBatchService service;
+
+    @BeforeEach
+    void setUp() {
+        BankProductProperties properties = new BankProductProperties();
+        properties.getBatch().setChunkSize(2);
+        properties.getBatch().setMaxItems(10);
+
+        service = new BankProductBatchService(repository, entityManager, new TransactionTemplate(transactionManager),
+                validator, properties, outbox);
+    }
+
+    // Simulates the ids assigned by persist()
+    private void assignIdsOnSave() {
+        AtomicLong ids = new AtomicLong();
+        when(repository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<BankProduct> chunk = invocation.getArgument(0);
+            chunk.forEach(p -> p.setId(ids.incrementAndGet()));
+            return chunk;
+        });
+    }
+
+    private MappingIterator<BankProduct> items(String json) throws IOException {
+        return objectMapper.readerFor(BankProduct.class).readValues(json);
+    }
+
+    // JSON array, persisted in chunks of 2
+    @Test
+    void testCreateProductsInChunks() throws Exception {
+
+        assignIdsOnSave();
+
+        BatchCreateResult result = service.createProducts(items("[{\"title\":\"A\"},{\"title\":\"B\"},{\"title\":\"C\"}]"));
+
+        assertEquals(3, result.getCreated());
+        assertEquals(0, result.getFailed());
+        assertEquals(List.of(1L, 2L, 3L), result.getItems().stream().map(BatchItemResult::getId).collect(Collectors.toList()));
+        verify(repository, times(2)).saveAll(anyList());
+        verify(transactionManager, times(2)).commit(any());
+        verify(entityManager, times(2)).clear();
+    }
+
+    // NDJSON with items rejected by bean validation (@NotBlank title)
+    @Test
+    void testCreateProductsReportsInvalidItems() throws Exception {
+
+        assignIdsOnSave();
+
+        BatchCreateResult result = service.createProducts(items("{\"title\":\"A\"}\n{\"title\":\" \"}\n{\"title\":\"C\"}\n{}\n"));
+
+        assertEquals(2, result.getCreated());
+        assertEquals(2, result.getFailed());
+        assertEquals(BatchItemResult.Status.CREATED, result.getItems().get(0).getStatus());
+        assertEquals(BatchItemResult.Status.INVALID, result.getItems().get(1).getStatus());
+        assertEquals(1, result.getItems().get(1).getIndex());
+        assertEquals(List.of("title must not be blank"), result.getItems().get(1).getErrors());
+        assertEquals(BatchItemResult.Status.CREATED, result.getItems().get(2).getStatus());
+        assertEquals(BatchItemResult.Status.INVALID, result.getItems().get(3).getStatus());
+        assertEquals(List.of("title must not be blank"), result.getItems().get(3).getErrors());
+    }
+
+    // Malformed item: the items before it are kept
+    @Test
+    void testCreateProductsStopsAtMalformedItem() throws Exception {
+
+        assignIdsOnSave();
+
+        BatchCreateResult result = service.createProducts(items("[{\"title\":\"A\"},{\"title\":]"));
+
+        assertEquals(1, result.getCreated());
+        assertEquals(1, result.getFailed());
+        assertEquals(1, result.getItems().get(1).getIndex());
+        assertTrue(result.getItems().get(1).getErrors().get(0).startsWith("malformed JSON"));
+    }
+
+    // Empty body
+    @Test
+    void testCreateProductsEmpty() throws Exception {
+
+        BatchCreateResult result = service.createProducts(items("[]"));
+
+        assertEquals(0, result.getCreated());
+        assertTrue(result.getItems().isEmpty());
+        verify(repository, never()).saveAll(anyList());
+    }
+}
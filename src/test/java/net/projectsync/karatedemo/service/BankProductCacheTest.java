@@ -0,0 +1,64 @@
+package net.projectsync.karatedemo.service;
+
+import net.projectsync.karatedemo.config.BankProductProperties;
+import net.projectsync.karatedemo.model.BankProductView;
+import org.junit.jupiter.api.Test;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BankProductCacheTest {
+
+    private BankProductView product(Long id, String title) {
+        return new BankProductView(id, title, 0L);
+    }
+
+    @Test
+    void testHitAndMissAreCounted() {
+
+        BankProductCache cache = new BankProductCache(new BankProductProperties());
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(1L, id -> { loads.incrementAndGet(); return Optional.of(product(id, "A")); });
+        Optional<BankProductView> second = cache.get(1L, id -> { loads.incrementAndGet(); return Optional.of(product(id, "B")); });
+
+        assertEquals("A", second.get().getTitle());
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(1, cache.stats().missCount());
+    }
+
+    @Test
+    void testMissingIdIsNotCached() {
+
+        BankProductCache cache = new BankProductCache(new BankProductProperties());
+
+        assertTrue(cache.get(1L, id -> Optional.empty()).isEmpty());
+        assertEquals("Created", cache.get(1L, id -> Optional.of(product(id, "Created"))).get().getTitle());
+    }
+
+    @Test
+    void testInvalidateForcesReload() {
+
+        BankProductCache cache = new BankProductCache(new BankProductProperties());
+
+        cache.get(1L, id -> Optional.of(product(id, "Old")));
+        cache.invalidate(1L);
+
+        assertEquals("New", cache.get(1L, id -> Optional.of(product(id, "New"))).get().getTitle());
+    }
+
+    @Test
+    void testDisabledCacheAlwaysLoads() {
+
+        BankProductProperties properties = new BankProductProperties();
+        properties.getCache().setEnabled(false);
+        BankProductCache cache = new BankProductCache(properties);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(1L, id -> { loads.incrementAndGet(); return Optional.of(product(id, "A")); });
+        cache.get(1L, id -> { loads.incrementAndGet(); return Optional.of(product(id, "A")); });
+
+        assertEquals(2, loads.get());
+    }
+}
@@ -0,0 +1,161 @@
+package net.projectsync.karatedemo.service;
+
+import net.projectsync.karatedemo.model.BankProduct;
+import net.projectsync.karatedemo.model.BankProductChange;
+import net.projectsync.karatedemo.model.ChangeFeedPage;
+import net.projectsync.karatedemo.repository.BankProductChangeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Outbox and change feed on H2 (profile 'h2'), changes are served right after their commit (settle=0)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles("h2")
+@TestPropertySource(properties = "bankproducts.changes.settle=0s")
+class BankProductChangeFeedIT {
+
+    @Autowired
+    private BankProductService service;
+
+    @Autowired
+    private BankProductBatchService batchService;
+
+    @Autowired
+    private BankProductChangeFeed changeFeed;
+
+    @Autowired
+    private BankProductChangeRepository changeRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private BankProductOutbox outbox;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private long since;
+
+    @BeforeEach
+    void setUp() {
+        since = changeFeed.latestSeq();
+    }
+
+    @Test
+    void testWritesAreFedInOrder() {
+        Long id = service.createProduct(new BankProduct("Savings Account")).getId();
+        service.updateProduct(id, new BankProduct("Fixed Deposit"), 0L);
+        service.deleteProduct(id);
+
+        ChangeFeedPage page = changeFeed.getChanges(since, 100);
+
+        assertThat(page.getItems()).extracting(BankProductChange::getType).containsExactly(
+                BankProductChange.Type.CREATED, BankProductChange.Type.UPDATED, BankProductChange.Type.DELETED);
+        assertThat(page.getItems()).extracting(BankProductChange::getProductId).containsOnly(id);
+        assertThat(page.getItems()).extracting(BankProductChange::getVersion).containsExactly(0L, 1L, null);
+        assertThat(page.getNextSince()).isEqualTo(page.getItems().get(2).getSeq());
+        assertThat(changeFeed.getChanges(page.getNextSince(), 100).getItems()).isEmpty();
+    }
+
+    @Test
+    void testRolledBackWriteIsNotFed() {
+        Long id = service.createProduct(new BankProduct("Savings Account")).getId();
+        long afterCreate = changeFeed.getChanges(since, 100).getNextSince();
+
+        assertThatThrownBy(() -> service.updateProduct(id, new BankProduct("Fixed Deposit"), 7L))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        service.deleteProduct(-1L);
+
+        assertThat(changeFeed.getChanges(afterCreate, 100).getItems()).isEmpty();
+    }
+
+    @Test
+    void testBatchCreatesAreFed() {
+        batchService.saveAll(List.of(new BankProduct("A"), new BankProduct("B"), new BankProduct("C")));
+
+        assertThat(changeFeed.getChanges(since, 100).getItems().stream().map(BankProductChange::getTitle)
+                .collect(Collectors.toList())).containsExactly("A", "B", "C");
+    }
+
+    @Test
+    void testChangeCommittedAfterHigherSeqIsNotSkipped() throws Exception {
+        Long id = service.createProduct(new BankProduct("Savings Account")).getId();
+        long afterCreate = changeFeed.latestSeq();
+        CountDownLatch recorded = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+
+        // Takes the lower seq, then holds its transaction open
+        CompletableFuture<Void> slowWrite = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(status -> {
+            outbox.recordUpdated(id, "Fixed Deposit", 1L);
+            recorded.countDown();
+            await(commit);
+        }));
+        assertThat(recorded.await(5, TimeUnit.SECONDS)).isTrue();
+        // Takes the higher seq and commits first
+        service.createProduct(new BankProduct("Current Account"));
+
+        ChangeFeedPage early = changeFeed.getChanges(afterCreate, 100);
+        assertThat(early.getItems()).isEmpty();
+        assertThat(early.getNextSince()).isEqualTo(afterCreate);
+
+        commit.countDown();
+        slowWrite.get(5, TimeUnit.SECONDS);
+
+        assertThat(changeFeed.getChanges(afterCreate, 100).getItems()).extracting(BankProductChange::getTitle)
+                .containsExactly("Fixed Deposit", "Current Account");
+    }
+
+    @Test
+    void testLongPollIsWokenByCommit() throws Exception {
+        CompletableFuture<ChangeFeedPage> next = new CompletableFuture<>();
+        Runnable cancel = changeFeed.await(since, 100, next::complete);
+
+        assertThat(cancel).isNotNull();
+        assertThat(next).isNotDone();
+
+        service.createProduct(new BankProduct("Savings Account"));
+
+        ChangeFeedPage page = next.get(5, TimeUnit.SECONDS);
+        assertThat(page.getItems()).extracting(BankProductChange::getTitle).containsExactly("Savings Account");
+        assertThat(changeFeed.waiting()).isZero();
+    }
+
+    @Test
+    void testPruneDeletesChangesOlderThanRetention() {
+        service.createProduct(new BankProduct("Savings Account"));
+        service.createProduct(new BankProduct("Fixed Deposit"));
+        long newest = changeFeed.getChanges(since, 100).getNextSince();
+
+        // Everything but the newest change is older than the retention (7 days)
+        jdbcTemplate.update("update bank_product_change set recorded_at = ? where seq < ?",
+                Timestamp.from(Instant.now().minus(Duration.ofDays(8))), newest);
+        changeFeed.prune();
+
+        assertThat(changeRepository.findAll()).extracting(BankProductChange::getSeq).containsExactly(newest);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,15 +1,30 @@
 package net.projectsync.karatedemo.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.OptimisticLockingFailureException;
+import net.projectsync.karatedemo.config.BankProductProperties;
+import net.projectsync.karatedemo.config.SearchIndexInitializer;
 import net.projectsync.karatedemo.model.BankProduct;
+import net.projectsync.karatedemo.model.BankProductSummary;
+import net.projectsync.karatedemo.model.BankProductView;
+import net.projectsync.karatedemo.model.BulkLookupResult;
+import net.projectsync.karatedemo.model.CursorPage;
 import net.projectsync.karatedemo.repository.BankProductRepository;
+import org.springframework.data.domain.PageRequest;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -19,6 +34,21 @@ class BankProductServiceTest {
     @Mock
     private BankProductRepository repository;
 
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Spy
+    private BankProductCache cache = new BankProductCache(new BankProductProperties());
+
+    @Spy
+    private BankProductProperties properties = new BankProductProperties();
+
+    @Mock
+    private BankProductOutbox outbox;
+
+    @Mock
+    private ObjectProvider<SearchIndexInitializer> searchIndexes;
+
     @InjectMocks
     private BankProductService service;
 
@@ -42,12 +72,11 @@ class BankProductServiceTest {
     @Test
     void testGetProductByIdFound() {
 
-        BankProduct product = new BankProduct("Test");
-        product.setId(1L);
+        BankProductView product = new BankProductView(1L, "Test", 0L);
 
-        when(repository.findById(1L)).thenReturn(Optional.of(product));
+        when(repository.findViewById(1L)).thenReturn(Optional.of(product));
 
-        Optional<BankProduct> result = service.getProductById(1L);
+        Optional<BankProductView> result = service.getProductById(1L);
 
         assertTrue(result.isPresent());
         assertEquals(product, result.get());
@@ -57,47 +86,284 @@ class BankProductServiceTest {
     @Test
     void testGetProductByIdNotFound() {
 
-        when(repository.findById(1L)).thenReturn(Optional.empty());
+        when(repository.findViewById(1L)).thenReturn(Optional.empty());
 
-        Optional<BankProduct> result = service.getProductById(1L);
+        Optional<BankProductView> result = service.getProductById(1L);
 
         assertFalse(result.isPresent());
     }
 
+    // READ BY ID (second read served from the cache)
+    @Test
+    void testGetProductByIdIsCached() {
+
+        BankProductView product = new BankProductView(1L, "Test", 0L);
+
+        when(repository.findViewById(1L)).thenReturn(Optional.of(product));
+
+        service.getProductById(1L);
+        Optional<BankProductView> result = service.getProductById(1L);
+
+        assertEquals(product, result.get());
+        verify(repository, times(1)).findViewById(1L);
+    }
+
+    // READ BY ID (update invalidates the cached product)
+    @Test
+    void testUpdateProductInvalidatesCache() {
+
+        when(repository.findViewById(1L)).thenReturn(Optional.of(new BankProductView(1L, "Old", 0L)));
+        when(repository.updateTitleById(1L, "New")).thenReturn(1);
+
+        service.getProductById(1L);
+        service.updateProduct(1L, new BankProduct("New"));
+        service.getProductById(1L);
+
+        verify(cache).invalidate(1L);
+        // 1x first read, 1x read after invalidation
+        verify(repository, times(2)).findViewById(1L);
+    }
+
+    // READ BY IDS: requested order, duplicates removed, missing ids reported
+    @Test
+    void testGetProductsByIds() {
+
+        BankProductView p1 = new BankProductView(1L, "A", 0L);
+        BankProductView p3 = new BankProductView(3L, "C", 0L);
+
+        when(repository.findViewsByIdIn(List.of(3L, 2L, 1L))).thenReturn(List.of(p1, p3));
+
+        BulkLookupResult result = service.getProductsByIds(Arrays.asList(3L, 2L, 1L, 3L, null));
+
+        assertEquals(List.of(p3, p1), result.getItems());
+        assertEquals(List.of(2L), result.getMissing());
+    }
+
+    // READ BY IDS: cached products skip the database, the rest is loaded in chunks
+    @Test
+    void testGetProductsByIdsUsesCacheAndChunks() {
+
+        properties.getLookup().setChunkSize(2);
+        BankProductView cached = new BankProductView(1L, "Cached", 0L);
+        when(repository.findViewById(1L)).thenReturn(Optional.of(cached));
+        service.getProductById(1L);
+
+        when(repository.findViewsByIdIn(List.of(2L, 3L))).thenReturn(List.of(new BankProductView(2L, "B", 0L)));
+        when(repository.findViewsByIdIn(List.of(4L))).thenReturn(List.of(new BankProductView(4L, "D", 0L)));
+
+        BulkLookupResult result = service.getProductsByIds(List.of(1L, 2L, 3L, 4L));
+
+        assertEquals(List.of(1L, 2L, 4L), result.getItems().stream().map(BankProductView::getId).collect(Collectors.toList()));
+        assertEquals(List.of(3L), result.getMissing());
+        verify(repository, times(2)).findViewsByIdIn(anyList());
+    }
+
+    // READ BY IDS: too many ids
+    @Test
+    void testGetProductsByIdsRejectsTooManyIds() {
+
+        properties.getLookup().setMaxIds(2);
+
+        assertThrows(IllegalArgumentException.class, () -> service.getProductsByIds(List.of(1L, 2L, 3L)));
+        verifyNoInteractions(repository);
+    }
+
+    // VERSION BY ID (from the database, product not cached)
+    @Test
+    void testGetProductVersionFromRepository() {
+
+        when(repository.findVersionById(1L)).thenReturn(Optional.of(4L));
+
+        assertEquals(Optional.of(4L), service.getProductVersion(1L));
+        verify(repository, never()).findViewById(anyLong());
+    }
+
+    // VERSION BY ID (from the cache)
+    @Test
+    void testGetProductVersionFromCache() {
+
+        when(repository.findViewById(1L)).thenReturn(Optional.of(new BankProductView(1L, "Test", 2L)));
+        service.getProductById(1L);
+
+        assertEquals(Optional.of(2L), service.getProductVersion(1L));
+        verify(repository, never()).findVersionById(anyLong());
+    }
+
     // READ ALL
     @Test
     void testGetAllProducts() {
 
-        BankProduct p1 = new BankProduct("A");
-        p1.setId(1L);
-        BankProduct p2 = new BankProduct("B");
-        p2.setId(2L);
+        BankProductView p1 = new BankProductView(1L, "A", 0L);
+        BankProductView p2 = new BankProductView(2L, "B", 0L);
 
-        when(repository.findAll()).thenReturn(Arrays.asList(p1, p2));
+        when(repository.findAllViews()).thenReturn(Arrays.asList(p1, p2));
 
-        List<BankProduct> result = service.getAllProducts();
+        List<BankProductView> result = service.getAllProducts();
 
         assertEquals(2, result.size());
         assertEquals(Arrays.asList(p1, p2), result);
+        // No entities are loaded on the read path
+        verify(repository, never()).findAll();
+    }
+
+    // READ PAGE (more rows available)
+    @Test
+    void testGetProductsPageWithNextCursor() {
+
+        BankProductView p1 = new BankProductView(11L, "A", 0L);
+        BankProductView p2 = new BankProductView(12L, "B", 0L);
+        BankProductView p3 = new BankProductView(13L, "C", 0L);
+
+        when(repository.findViewsAfter(10L, PageRequest.of(0, 3)))
+                .thenReturn(Arrays.asList(p1, p2, p3));
+
+        CursorPage<BankProductView> page = service.getProductsPage(10L, 2);
+
+        assertEquals(Arrays.asList(p1, p2), page.getItems());
+        assertEquals(12L, page.getNextCursor());
+    }
+
+    // READ PAGE (last page)
+    @Test
+    void testGetProductsPageLastPage() {
+
+        BankProductView p1 = new BankProductView(1L, "A", 0L);
+
+        when(repository.findViewsAfter(0L, PageRequest.of(0, 3)))
+                .thenReturn(List.of(p1));
+
+        CursorPage<BankProductView> page = service.getProductsPage(null, 2);
+
+        assertEquals(List.of(p1), page.getItems());
+        assertNull(page.getNextCursor());
+    }
+
+    // READ PAGE (limit is capped)
+    @Test
+    void testGetProductsPageLimitIsCapped() {
+
+        when(repository.findViewsAfter(0L, PageRequest.of(0, BankProductService.MAX_PAGE_SIZE + 1)))
+                .thenReturn(List.of());
+
+        CursorPage<BankProductView> page = service.getProductsPage(0L, 1_000_000);
+
+        assertTrue(page.getItems().isEmpty());
+        assertNull(page.getNextCursor());
+    }
+
+    // SEARCH (prefix): term is trimmed and lower cased
+    @Test
+    void testSearchProductsPrefix() {
+
+        BankProductSummary s1 = mock(BankProductSummary.class);
+        BankProductSummary s2 = mock(BankProductSummary.class);
+        BankProductSummary s3 = mock(BankProductSummary.class);
+        when(s2.getId()).thenReturn(12L);
+
+        when(repository.searchByTitle("sav%", 0L, PageRequest.of(0, 3))).thenReturn(List.of(s1, s2, s3));
+
+        CursorPage<BankProductSummary> page = service.searchProducts("  Sav ", BankProductService.SearchMatch.PREFIX, null, 2);
+
+        assertEquals(List.of(s1, s2), page.getItems());
+        assertEquals(12L, page.getNextCursor());
+    }
+
+    // SEARCH (substring): LIKE wildcards in the term are escaped
+    @Test
+    void testSearchProductsSubstringEscapesWildcards() {
+
+        when(repository.searchByTitle("%10\\%\\_x%", 5L, PageRequest.of(0, 21))).thenReturn(List.of());
+
+        CursorPage<BankProductSummary> page = service.searchProducts("10%_x", BankProductService.SearchMatch.SUBSTRING, 5L, 20);
+
+        assertTrue(page.getItems().isEmpty());
+        assertNull(page.getNextCursor());
+    }
+
+    // SEARCH (H2): the indexed title_lower column is used once SearchIndexInitializer has created it
+    @Test
+    void testSearchProductsUsesTitleLowerColumn() {
+
+        SearchIndexInitializer indexes = mock(SearchIndexInitializer.class);
+        when(indexes.usesTitleLowerColumn()).thenReturn(true);
+        when(searchIndexes.getIfAvailable()).thenReturn(indexes);
+        when(repository.searchByTitleLower("sav%", 0L, PageRequest.of(0, 21))).thenReturn(List.of());
+
+        CursorPage<BankProductSummary> page = service.searchProducts("sav", BankProductService.SearchMatch.PREFIX, null, 20);
+
+        assertTrue(page.getItems().isEmpty());
+        verify(repository, never()).searchByTitle(any(), any(), any());
+    }
+
+    // SEARCH (invalid terms)
+    @Test
+    void testSearchProductsRejectsShortTerms() {
+
+        assertThrows(IllegalArgumentException.class,
+                () -> service.searchProducts(" ", BankProductService.SearchMatch.PREFIX, null, 20));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.searchProducts("ab", BankProductService.SearchMatch.SUBSTRING, null, 20));
+        verifyNoInteractions(repository);
+    }
+
+    // EXPORT (NDJSON)
+    @Test
+    void testExportProducts() throws Exception {
+
+        when(repository.streamAllViews()).thenReturn(Stream.of(
+                new BankProductView(1L, "A", null), new BankProductView(2L, "B", null)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long count = service.exportProducts(out);
+
+        assertEquals(2, count);
+        assertEquals("{\"id\":1,\"title\":\"A\"}\n{\"id\":2,\"title\":\"B\"}\n",
+                out.toString(StandardCharsets.UTF_8));
+    }
+
+    // EXPORT (empty table)
+    @Test
+    void testExportProductsEmpty() throws Exception {
+
+        when(repository.streamAllViews()).thenReturn(Stream.empty());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long count = service.exportProducts(out);
+
+        assertEquals(0, count);
+        assertEquals(0, out.size());
     }
 
     // UPDATE
     @Test
     void testUpdateProductFound() {
 
-        BankProduct existing = new BankProduct("Old");
-        existing.setId(1L);
         BankProduct updated = new BankProduct("New");
 
-        when(repository.findById(1L)).thenReturn(Optional.of(existing));
-        when(repository.save(existing)).thenReturn(new BankProduct("New") {{ setId(1L); }});
+        when(repository.updateTitleById(1L, "New")).thenReturn(1);
 
         Optional<BankProduct> result = service.updateProduct(1L, updated);
 
         assertTrue(result.isPresent());
+        assertEquals(1L, result.get().getId());
         assertEquals("New", result.get().getTitle());
-        verify(repository).findById(1L);
-        verify(repository).save(existing);
+        verify(repository).updateTitleById(1L, "New");
+        verify(repository, never()).findById(anyLong());
+        verify(repository, never()).save(any());
+    }
+
+    // UPDATE: the version written by the UPDATE is read back in the same transaction
+    @Test
+    void testUpdateProductReturnsNewVersion() {
+
+        when(repository.updateTitleById(1L, "New")).thenReturn(1);
+        when(repository.findVersionById(1L)).thenReturn(Optional.of(4L));
+
+        Optional<BankProduct> result = service.updateProduct(1L, new BankProduct("New"));
+
+        assertTrue(result.isPresent());
+        assertEquals(4L, result.get().getVersion());
+        verify(outbox).recordUpdated(1L, "New", 4L);
     }
 
     // UPDATE (not found)
@@ -106,43 +372,89 @@ class BankProductServiceTest {
 
         BankProduct updated = new BankProduct("New");
 
-        when(repository.findById(1L)).thenReturn(Optional.empty());
+        when(repository.updateTitleById(1L, "New")).thenReturn(0);
 
         Optional<BankProduct> result = service.updateProduct(1L, updated);
 
         assertFalse(result.isPresent());
-        verify(repository).findById(1L);
+        verify(repository).updateTitleById(1L, "New");
         verify(repository, never()).save(any());
     }
 
+    // UPDATE (If-Match, current version)
+    @Test
+    void testUpdateProductWithExpectedVersion() {
+
+        when(repository.updateTitleByIdAndVersion(1L, "New", 2L)).thenReturn(1);
+
+        BankProduct result = service.updateProduct(1L, new BankProduct("New"), 2L);
+
+        assertEquals(1L, result.getId());
+        assertEquals("New", result.getTitle());
+        assertEquals(3L, result.getVersion());
+        verify(cache).invalidate(1L);
+    }
+
+    // UPDATE (If-Match, stale version)
+    @Test
+    void testUpdateProductWithStaleVersion() {
+
+        when(repository.updateTitleByIdAndVersion(1L, "New", 1L)).thenReturn(0);
+
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> service.updateProduct(1L, new BankProduct("New"), 1L));
+    }
+
     // DELETE
     @Test
     void testDeleteProductFound() {
 
-        BankProduct product = new BankProduct("ToDelete");
-        product.setId(1L);
-
-        when(repository.findById(1L)).thenReturn(Optional.of(product));
-        doNothing().when(repository).deleteById(1L);
+        when(repository.deleteProductById(1L)).thenReturn(1);
 
         boolean deleted = service.deleteProduct(1L);
 
         assertTrue(deleted);
-        verify(repository).findById(1L);
-        verify(repository).deleteById(1L);
+        verify(repository).deleteProductById(1L);
+        verify(repository, never()).findById(anyLong());
+        verify(repository, never()).deleteById(anyLong());
     }
 
     // DELETE (not found)
     @Test
     void testDeleteProductNotFound() {
 
-        when(repository.findById(1L)).thenReturn(Optional.empty());
+        when(repository.deleteProductById(1L)).thenReturn(0);
 
         boolean deleted = service.deleteProduct(1L);
 
         assertFalse(deleted);
-        verify(repository).findById(1L);
-        verify(repository, never()).deleteById(anyLong());
+        verify(repository).deleteProductById(1L);
     }
-}
 
+    // Every successful write is recorded in the outbox, failed ones are not
+    @Test
+    void testWritesAreRecordedInOutbox() {
+
+        BankProduct saved = new BankProduct("New Product");
+        saved.setId(1L);
+        saved.setVersion(0L);
+        when(repository.save(any(BankProduct.class))).thenReturn(saved);
+        when(repository.updateTitleById(1L, "New")).thenReturn(1);
+        when(repository.findVersionById(1L)).thenReturn(Optional.of(1L));
+        when(repository.updateTitleByIdAndVersion(1L, "Newer", 1L)).thenReturn(1);
+        when(repository.deleteProductById(1L)).thenReturn(1);
+        when(repository.deleteProductById(2L)).thenReturn(0);
+
+        service.createProduct(new BankProduct("New Product"));
+        service.updateProduct(1L, new BankProduct("New"));
+        service.updateProduct(1L, new BankProduct("Newer"), 1L);
+        service.deleteProduct(1L);
+        service.deleteProduct(2L);
+
+        verify(outbox).recordCreated(List.of(saved));
+        verify(outbox).recordUpdated(1L, "New", 1L);
+        verify(outbox).recordUpdated(1L, "Newer", 2L);
+        verify(outbox).recordDeleted(1L);
+        verifyNoMoreInteractions(outbox);
+    }
+}
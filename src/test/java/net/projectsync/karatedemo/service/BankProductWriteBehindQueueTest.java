@@ -0,0 +1,166 @@
+package net.projectsync.karatedemo.service;
+
+import net.projectsync.karatedemo.config.BankProductProperties;
+import net.projectsync.karatedemo.model.BankProduct;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BankProductWriteBehindQueueTest {
+
+    @Mock
+    private BankProductBatchService batchService;
+
+    private final AtomicLong ids = new AtomicLong();
+
+    // Queue without writer thread: close() writes what is queued on the calling thread
+    private BankProductWriteBehindQueue queue(int capacity, int maxBatchSize) {
+        BankProductProperties.Ingest ingest = new BankProductProperties.Ingest();
+        ingest.setCapacity(capacity);
+        ingest.setMaxBatchSize(maxBatchSize);
+        return new BankProductWriteBehindQueue(batchService, ingest);
+    }
+
+    // Simulates the ids assigned by saveAll(), fails every batch that contains a product titled 'Broken'
+    private void assignIdsOnSave() {
+        doAnswer(invocation -> {
+            List<BankProduct> products = invocation.getArgument(0);
+            if (products.stream().anyMatch(p -> "Broken".equals(p.getTitle()))) {
+                throw new DataIntegrityViolationException("broken product");
+            }
+            products.forEach(p -> {
+                p.setId(ids.incrementAndGet());
+                p.setVersion(0L);
+            });
+            return null;
+        }).when(batchService).saveAll(anyList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testQueuedProductsAreWrittenInBatches() throws Exception {
+        assignIdsOnSave();
+        BankProductWriteBehindQueue queue = queue(10, 2);
+
+        List<CompletableFuture<BankProduct>> futures = IntStream.range(0, 5)
+                .mapToObj(i -> queue.submit(new BankProduct("Product " + i)))
+                .collect(Collectors.toList());
+        assertEquals(5, queue.size());
+
+        queue.close();
+
+        ArgumentCaptor<List<BankProduct>> batches = ArgumentCaptor.forClass(List.class);
+        verify(batchService, times(3)).saveAll(batches.capture());
+        assertEquals(List.of(2, 2, 1), batches.getAllValues().stream().map(List::size).collect(Collectors.toList()));
+        for (int i = 0; i < futures.size(); i++) {
+            BankProduct written = futures.get(i).getNow(null);
+            assertEquals("Product " + i, written.getTitle());
+            assertEquals(i + 1L, written.getId());
+            assertEquals(0L, written.getVersion());
+        }
+    }
+
+    @Test
+    void testFullQueueRejects() {
+        BankProductWriteBehindQueue queue = queue(1, 10);
+        queue.submit(new BankProduct("Savings Account"));
+
+        WriteBehindRejectedException e = assertThrows(WriteBehindRejectedException.class,
+                () -> queue.submit(new BankProduct("Fixed Deposit")));
+
+        assertEquals(WriteBehindRejectedException.Reason.FULL, e.getReason());
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    void testClosedQueueRejects() throws Exception {
+        BankProductWriteBehindQueue queue = queue(10, 10);
+        queue.close();
+
+        assertThrows(WriteBehindRejectedException.class, () -> queue.submit(new BankProduct("Savings Account")));
+    }
+
+    // A submit() that passed the 'running' check before close() and queues during the final drain
+    // is either written or rejected: its request never waits for a future nobody completes
+    @Test
+    void testSubmitRacingWithCloseIsWrittenOrRejected() throws Exception {
+        assignIdsOnSave();
+        BankProductProperties.Ingest ingest = new BankProductProperties.Ingest();
+        ingest.setCapacity(1);
+        ingest.setEnqueueTimeout(Duration.ofSeconds(5));
+        BankProductWriteBehindQueue queue = new BankProductWriteBehindQueue(batchService, ingest);
+        queue.submit(new BankProduct("Savings Account"));
+
+        AtomicReference<Object> outcome = new AtomicReference<>();
+        Thread submitter = new Thread(() -> {
+            try {
+                outcome.set(queue.submit(new BankProduct("Fixed Deposit")));
+            } catch (WriteBehindRejectedException e) {
+                outcome.set(e);
+            }
+        });
+        submitter.start();
+        // Blocked in offer() on the full queue, past the 'running' check
+        while (submitter.getState() != Thread.State.TIMED_WAITING) {
+            Thread.sleep(1);
+        }
+
+        queue.close();
+        submitter.join(5000);
+
+        if (outcome.get() instanceof CompletableFuture) {
+            CompletableFuture<?> future = (CompletableFuture<?>) outcome.get();
+            assertTrue(future.isDone());
+        } else {
+            assertInstanceOf(WriteBehindRejectedException.class, outcome.get());
+        }
+        assertEquals(0, queue.size());
+    }
+
+    // Only the product that fails by itself gets the error, the rest of its batch is written
+    @Test
+    void testFailedBatchIsRetriedOneByOne() throws Exception {
+        assignIdsOnSave();
+        BankProductWriteBehindQueue queue = queue(10, 10);
+
+        CompletableFuture<BankProduct> first = queue.submit(new BankProduct("Savings Account"));
+        CompletableFuture<BankProduct> broken = queue.submit(new BankProduct("Broken"));
+        CompletableFuture<BankProduct> last = queue.submit(new BankProduct("Fixed Deposit"));
+
+        queue.close();
+
+        // 1 batch of 3, then 3 single products
+        verify(batchService, times(4)).saveAll(anyList());
+        assertNotNull(first.getNow(null).getId());
+        assertNotNull(last.getNow(null).getId());
+        assertTrue(broken.isCompletedExceptionally());
+    }
+
+    @Test
+    void testCreateWaitsForWriterThread() throws Exception {
+        assignIdsOnSave();
+        BankProductProperties properties = new BankProductProperties();
+        BankProductWriteBehindQueue queue = new BankProductWriteBehindQueue(batchService, properties);
+        try {
+            BankProduct created = queue.create(new BankProduct("Savings Account"));
+
+            assertEquals(1L, created.getId());
+        } finally {
+            queue.close();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package net.projectsync.karatedemo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.projectsync.karatedemo.config.BankProductProperties;
+import net.projectsync.karatedemo.model.BankProduct;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IdempotencyServiceTest {
+
+    private final BankProductProperties properties = new BankProductProperties();
+    private final IdempotencyService service = new IdempotencyService(
+            new InMemoryIdempotencyStore(properties), new ObjectMapper(), properties);
+    private final AtomicInteger executions = new AtomicInteger();
+
+    // Stands in for the controller's create: every execution creates a new product
+    private final Supplier<ResponseEntity<BankProduct>> create = () -> {
+        BankProduct created = new BankProduct("Savings Account");
+        created.setId((long) executions.incrementAndGet());
+        return ResponseEntity.created(URI.create("/api/v1/bankproducts/" + created.getId())).eTag("\"0\"").body(created);
+    };
+
+    private ResponseEntity<BankProduct> post(String key, String title, Supplier<ResponseEntity<BankProduct>> action) {
+        return service.execute(key, "POST /api/v1/bankproducts", new BankProduct(title), BankProduct.class, action);
+    }
+
+    @Test
+    void testRetryIsReplayedWithoutExecuting() {
+        ResponseEntity<BankProduct> first = post("key-1", "Savings Account", create);
+        ResponseEntity<BankProduct> retry = post("key-1", "Savings Account", create);
+
+        assertThat(executions).hasValue(1);
+        assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(retry.getBody().getId()).isEqualTo(first.getBody().getId());
+        assertThat(retry.getHeaders().getLocation()).isEqualTo(first.getHeaders().getLocation());
+        assertThat(retry.getHeaders().getETag()).isEqualTo("\"0\"");
+        assertThat(retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(first.getHeaders().containsKey(IdempotencyService.REPLAYED_HEADER)).isFalse();
+    }
+
+    @Test
+    void testDifferentKeysExecuteSeparately() {
+        post("key-1", "Savings Account", create);
+        post("key-2", "Savings Account", create);
+
+        assertThat(executions).hasValue(2);
+    }
+
+    @Test
+    void testKeyReusedForDifferentBodyIsRejected() {
+        post("key-1", "Savings Account", create);
+
+        assertThatThrownBy(() -> post("key-1", "Fixed Deposit", create))
+                .isInstanceOfSatisfying(IdempotencyKeyException.class,
+                        e -> assertThat(e.getReason()).isEqualTo(IdempotencyKeyException.Reason.MISMATCH));
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void testInvalidKeyIsRejected() {
+        assertThatThrownBy(() -> post(" ", "Savings Account", create))
+                .isInstanceOfSatisfying(IdempotencyKeyException.class,
+                        e -> assertThat(e.getReason()).isEqualTo(IdempotencyKeyException.Reason.INVALID));
+        assertThatThrownBy(() -> post("k".repeat(256), "Savings Account", create))
+                .isInstanceOf(IdempotencyKeyException.class);
+    }
+
+    @Test
+    void testFailedRequestIsNotStored() {
+        assertThatThrownBy(() -> post("key-1", "Savings Account", () -> {
+            throw new IllegalStateException("database down");
+        })).isInstanceOf(IllegalStateException.class);
+        post("key-1", "Savings Account", () -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+
+        ResponseEntity<BankProduct> retry = post("key-1", "Savings Account", create);
+
+        assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(executions).hasValue(1);
+        assertThat(service.inFlight()).isZero();
+    }
+
+    @Test
+    void testTimedOutWriteBehindCreateKeepsKeyUntilWritten() {
+        CompletableFuture<BankProduct> written = new CompletableFuture<>();
+        assertThatThrownBy(() -> post("key-1", "Savings Account", () -> {
+            throw new WriteBehindRejectedException(WriteBehindRejectedException.Reason.TIMEOUT, "not written", written)
+                    .respondWhenWritten(product -> ResponseEntity.status(HttpStatus.CREATED).body(product));
+        })).isInstanceOf(WriteBehindRejectedException.class);
+
+        // Still queued: a retry must not create the product a second time
+        assertThatThrownBy(() -> post("key-1", "Savings Account", create))
+                .isInstanceOfSatisfying(IdempotencyKeyException.class,
+                        e -> assertThat(e.getReason()).isEqualTo(IdempotencyKeyException.Reason.IN_PROGRESS));
+
+        BankProduct stored = new BankProduct("Savings Account");
+        stored.setId(42L);
+        written.complete(stored);
+
+        ResponseEntity<BankProduct> retry = post("key-1", "Savings Account", create);
+        assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(retry.getBody().getId()).isEqualTo(42L);
+        assertThat(executions).hasValue(0);
+    }
+
+    @Test
+    void testRejectedWriteBehindCreateReleasesKey() {
+        assertThatThrownBy(() -> post("key-1", "Savings Account", () -> {
+            throw new WriteBehindRejectedException(WriteBehindRejectedException.Reason.FULL, "full")
+                    .respondWhenWritten(product -> ResponseEntity.status(HttpStatus.CREATED).body(product));
+        })).isInstanceOf(WriteBehindRejectedException.class);
+
+        assertThat(post("key-1", "Savings Account", create).getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void testConcurrentDuplicateWaitsForFirstRequest() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<ResponseEntity<BankProduct>> first = CompletableFuture.supplyAsync(() -> post("key-1", "Savings Account", () -> {
+            started.countDown();
+            await(release);
+            return create.get();
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture<ResponseEntity<BankProduct>> duplicate = CompletableFuture.supplyAsync(() -> post("key-1", "Savings Account", create));
+        Thread.sleep(100);
+        assertThat(duplicate).isNotDone();
+
+        release.countDown();
+
+        assertThat(duplicate.get(5, TimeUnit.SECONDS).getBody().getId()).isEqualTo(first.get(5, TimeUnit.SECONDS).getBody().getId());
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void testDuplicateGivesUpAfterWaitTimeout() throws Exception {
+        properties.getIdempotency().setWaitTimeout(Duration.ofMillis(50));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<ResponseEntity<BankProduct>> first = CompletableFuture.supplyAsync(() -> post("key-1", "Savings Account", () -> {
+            started.countDown();
+            await(release);
+            return create.get();
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> post("key-1", "Savings Account", create))
+                .isInstanceOfSatisfying(IdempotencyKeyException.class,
+                        e -> assertThat(e.getReason()).isEqualTo(IdempotencyKeyException.Reason.IN_PROGRESS));
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        assertThat(executions).hasValue(1);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}